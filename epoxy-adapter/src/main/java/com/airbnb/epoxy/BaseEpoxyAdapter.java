@@ -8,11 +8,14 @@ import android.support.v7.widget.RecyclerView;
 import android.view.View;
 import android.view.ViewGroup;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 
 abstract class BaseEpoxyAdapter extends RecyclerView.Adapter<EpoxyViewHolder> {
   private static final String SAVED_STATE_ARG_VIEW_HOLDERS = "saved_state_view_holders";
+  private static final String SAVED_STATE_ARG_VIEW_HOLDERS_FILE = "saved_state_view_holders_file";
 
   private int spanCount = 1;
 
@@ -23,14 +26,22 @@ abstract class BaseEpoxyAdapter extends RecyclerView.Adapter<EpoxyViewHolder> {
    */
   private final BoundViewHolders boundViewHolders = new BoundViewHolders();
   private ViewHolderState viewHolderState = new ViewHolderState();
+  private int maxSavedViewStateCount = Integer.MAX_VALUE;
+  private long maxSavedViewStateBytes = Long.MAX_VALUE;
+  @Nullable private File viewStateSpillDirectory;
+  private long viewStateSpillThresholdBytes;
+  /**
+   * Identifies the file that view state is saved to, once it has been saved to a file. The same
+   * file is overwritten each time state is saved so that only one file exists per adapter.
+   */
+  @Nullable private String viewStateFileToken;
 
   private final SpanSizeLookup spanSizeLookup = new SpanSizeLookup() {
 
     @Override
     public int getSpanSize(int position) {
       try {
-        return getModelForPosition(position)
-            .getSpanSizeInternal(spanCount, position, getItemCount());
+        return getSpanSizeForPosition(position);
       } catch (IndexOutOfBoundsException e) {
         // There seems to be a GridLayoutManager bug where when the user is in accessibility mode
         // it incorrectly uses an outdated view position
@@ -74,7 +85,7 @@ abstract class BaseEpoxyAdapter extends RecyclerView.Adapter<EpoxyViewHolder> {
 
   @Override
   public EpoxyViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-    EpoxyModel<?> model = viewTypeManager.getModelForViewType(this, viewType);
+    EpoxyModel<?> model = getModelForViewType(viewType);
     View view = model.buildView(parent);
     return new EpoxyViewHolder(view);
   }
@@ -93,7 +104,7 @@ abstract class BaseEpoxyAdapter extends RecyclerView.Adapter<EpoxyViewHolder> {
     // but we don't rely on that to be safe and to simplify
     EpoxyViewHolder boundViewHolder = boundViewHolders.get(holder);
     if (boundViewHolder != null) {
-      viewHolderState.save(boundViewHolder);
+      saveViewState(boundViewHolder);
     }
 
     EpoxyModel<?> modelToShow = getModelForPosition(position);
@@ -167,9 +178,19 @@ abstract class BaseEpoxyAdapter extends RecyclerView.Adapter<EpoxyViewHolder> {
     return getCurrentModels().get(position);
   }
 
+  /** Find a model with the given view type so it can create a view for that type. */
+  EpoxyModel<?> getModelForViewType(int viewType) {
+    return viewTypeManager.getModelForViewType(this, viewType);
+  }
+
+  int getSpanSizeForPosition(int position) {
+    return getModelForPosition(position)
+        .getSpanSizeInternal(spanCount, position, getItemCount());
+  }
+
   @Override
   public void onViewRecycled(EpoxyViewHolder holder) {
-    viewHolderState.save(holder);
+    saveViewState(holder);
     boundViewHolders.remove(holder);
 
     EpoxyModel<?> model = holder.getModel();
@@ -211,14 +232,30 @@ abstract class BaseEpoxyAdapter extends RecyclerView.Adapter<EpoxyViewHolder> {
     // scrolled off and unbound will already have had
     // their state saved.
     for (EpoxyViewHolder holder : boundViewHolders) {
-      viewHolderState.save(holder);
+      saveViewState(holder);
     }
 
     if (viewHolderState.size() > 0 && !hasStableIds()) {
       throw new IllegalStateException("Must have stable ids when saving view holder state");
     }
 
-    outState.putParcelable(SAVED_STATE_ARG_VIEW_HOLDERS, viewHolderState);
+    if (viewStateSpillDirectory != null
+        && viewHolderState.getSizeBytes() > viewStateSpillThresholdBytes) {
+      if (viewStateFileToken == null) {
+        viewStateFileToken = ViewStateFile.newToken();
+      }
+      viewHolderState.writeToFile(viewStateSpillDirectory, viewStateFileToken);
+      outState.putString(SAVED_STATE_ARG_VIEW_HOLDERS_FILE, viewStateFileToken);
+    } else {
+      viewHolderState.loadSpilledStates();
+      outState.putParcelable(SAVED_STATE_ARG_VIEW_HOLDERS, viewHolderState);
+
+      // Only the newest saved state is restored, so a file written for older state is not needed
+      if (viewStateFileToken != null && viewStateSpillDirectory != null) {
+        ViewStateFile.delete(viewStateSpillDirectory, viewStateFileToken);
+        viewStateFileToken = null;
+      }
+    }
   }
 
   public void onRestoreInstanceState(@Nullable Bundle inState) {
@@ -231,14 +268,131 @@ abstract class BaseEpoxyAdapter extends RecyclerView.Adapter<EpoxyViewHolder> {
     }
 
     if (inState != null) {
-      viewHolderState = inState.getParcelable(SAVED_STATE_ARG_VIEW_HOLDERS);
-      if (viewHolderState == null) {
-        throw new IllegalStateException(
-            "Tried to restore instance state, but onSaveInstanceState was never called.");
+      String spillFileToken = inState.getString(SAVED_STATE_ARG_VIEW_HOLDERS_FILE);
+      if (spillFileToken != null) {
+        viewHolderState = readViewHolderStateFromFile(spillFileToken);
+        // State saved later overwrites the same file, so only one file is kept
+        viewStateFileToken = spillFileToken;
+      } else {
+        viewHolderState = inState.getParcelable(SAVED_STATE_ARG_VIEW_HOLDERS);
+        if (viewHolderState == null) {
+          throw new IllegalStateException(
+              "Tried to restore instance state, but onSaveInstanceState was never called.");
+        }
       }
+      viewHolderState.setLimits(maxSavedViewStateCount, maxSavedViewStateBytes);
     }
   }
 
+  private ViewHolderState readViewHolderStateFromFile(String spillFileToken) {
+    if (viewStateSpillDirectory == null) {
+      throw new IllegalStateException(
+          "View state was saved to a file. `setSavedViewStateSpillDirectory` must be called "
+              + "before state is restored.");
+    }
+
+    try {
+      return ViewHolderState.readFromFile(viewStateSpillDirectory, spillFileToken);
+    } catch (IOException e) {
+      // The file may have been deleted, for example if it was in a cache directory that was
+      // cleared. The view state is lost, but the adapter can continue without it.
+      onExceptionSwallowed(
+          new IllegalStateException("Failed to restore saved view state from a file", e));
+      return new ViewHolderState();
+    }
+  }
+
+  private void saveViewState(EpoxyViewHolder holder) {
+    // The state of a removed model is pruned when it is removed, so we don't want to save it again
+    // when its view is recycled after the remove animation finishes.
+    if (isModelRemoved(holder.getItemId())) {
+      return;
+    }
+
+    viewHolderState.save(holder);
+  }
+
+  /**
+   * Whether the model with the given id is known to have been removed from the adapter. Adapters
+   * that track their models with a {@link DiffHelper} override this so that view state is not saved
+   * for models that are no longer in the adapter.
+   */
+  boolean isModelRemoved(long modelId) {
+    return false;
+  }
+
+  ViewHolderState getViewHolderState() {
+    return viewHolderState;
+  }
+
+  /**
+   * Limit how much view state is saved for models with {@link EpoxyModel#shouldSaveViewState()}
+   * enabled. The state of a model is kept after its view is recycled so it can be restored when the
+   * model is shown again, and is included in {@link #onSaveInstanceState(Bundle)}. For long lists
+   * this can grow large, so once either limit is exceeded the least recently used states are
+   * discarded.
+   * <p>
+   * By default there is no limit, but the state of models that are removed from the adapter is
+   * always discarded if diffing is used.
+   *
+   * @param maxStateCount The maximum number of model states to keep.
+   * @param maxSizeBytes  The maximum estimated size of all states, in bytes. The size of a state is
+   *                      estimated as the space it takes up when parceled.
+   */
+  public void setSavedViewStateLimits(int maxStateCount, long maxSizeBytes) {
+    maxSavedViewStateCount = maxStateCount;
+    maxSavedViewStateBytes = maxSizeBytes;
+    viewHolderState.setLimits(maxStateCount, maxSizeBytes);
+  }
+
+  /**
+   * Enable saving view state to a file instead of the Bundle in {@link
+   * #onSaveInstanceState(Bundle)} when the state is large. Very large Bundles can cause a {@link
+   * android.os.TransactionTooLargeException} and slow down saving an activity's state.
+   * <p>
+   * If the estimated size of the saved view state is greater than the threshold, it is written to
+   * a file in the given directory on a background thread and only a token to find the file is put
+   * in the Bundle. When state is restored each model's view state is only read from the file when
+   * that model is bound. The adapter reuses one file each time state is saved, and deletes it once
+   * state is saved in the Bundle instead.
+   * <p>
+   * This must be called with the same directory before {@link #onRestoreInstanceState(Bundle)}. An
+   * app-private cache directory is recommended. Files for state that is never restored are deleted
+   * once they are a day old, the next time the directory is used. If the file no longer exists when
+   * state is restored the view state is discarded and {@link
+   * #onExceptionSwallowed(RuntimeException)} is called.
+   *
+   * @param directory      The directory to write files to, or null to always save state in the
+   *                       Bundle.
+   * @param thresholdBytes State whose estimated size is greater than this is written to a file.
+   * @see #getSavedViewStateSizeBytes()
+   */
+  public void setSavedViewStateSpillDirectory(@Nullable File directory, long thresholdBytes) {
+    viewStateSpillDirectory = directory;
+    viewStateSpillThresholdBytes = thresholdBytes;
+  }
+
+  /**
+   * The number of models that currently have view state saved. This does not include the state of
+   * views that are currently bound, which is only saved when they are recycled or when {@link
+   * #onSaveInstanceState(Bundle)} is called.
+   *
+   * @see #setSavedViewStateLimits(int, long)
+   */
+  public int getSavedViewStateCount() {
+    return viewHolderState.size();
+  }
+
+  /**
+   * The estimated size in bytes of all saved view state. This is the space the state takes up when
+   * parceled in {@link #onSaveInstanceState(Bundle)}.
+   *
+   * @see #setSavedViewStateLimits(int, long)
+   */
+  public long getSavedViewStateSizeBytes() {
+    return viewHolderState.getSizeBytes();
+  }
+
   /**
    * Finds the position of the given model in the list. Doesn't use indexOf to avoid unnecessary
    * equals() calls since we're looking for the same object instance.
@@ -0,0 +1,28 @@
+package com.airbnb.epoxy;
+
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * A {@link ModelBuildScheduler} that is also told when the controller's adapter is attached to or
+ * detached from a RecyclerView, for example so that builds can be prioritized for controllers that
+ * are visible. The callbacks do nothing by default.
+ *
+ * @see GlobalModelBuildScheduler
+ */
+public abstract class BaseModelBuildScheduler implements ModelBuildScheduler {
+
+  @Override
+  public void onBuildFinished(long durationNanos) {
+
+  }
+
+  /** Called when the controller's adapter is attached to a RecyclerView. */
+  public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+
+  }
+
+  /** Called when the controller's adapter is detached from a RecyclerView. */
+  public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+
+  }
+}
@@ -0,0 +1,195 @@
+package com.airbnb.epoxy;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.support.annotation.Nullable;
+import android.support.v4.view.ViewCompat;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.AttributeSet;
+import android.view.View;
+
+import com.airbnb.viewmodeladapter.R;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A horizontally scrolling {@link RecyclerView} that displays a nested list of {@link EpoxyModel}s.
+ * This is meant to be used with {@link CarouselModel}, but can also be used directly.
+ * <p>
+ * The carousel owns a nested {@link EpoxyController} for its whole lifetime. Each call to {@link
+ * #setModels(List)} is diffed against the models that were previously set, so changes to a
+ * carousel that is on screen are applied with normal item animations instead of resetting the
+ * whole adapter.
+ * <p>
+ * Models are built synchronously when they are set. This guarantees that the adapter is populated
+ * before the parent adapter restores the carousel's saved view state, so scroll position is
+ * correctly restored when the carousel's model has {@link EpoxyModel#shouldSaveViewState()}
+ * enabled.
+ * <p>
+ * Unless {@link #setRecycledViewPool(RecycledViewPool)} is called explicitly, all carousels in the
+ * same window share a single {@link RecycledViewPool} so that views can be recycled between
+ * carousels instead of each carousel inflating its own.
+ */
+public class Carousel extends RecyclerView {
+
+  private final CarouselController controller = new CarouselController();
+  private final LinearLayoutManager layoutManager;
+  private boolean hasCustomViewPool;
+
+  public Carousel(Context context) {
+    this(context, null);
+  }
+
+  public Carousel(Context context, @Nullable AttributeSet attrs) {
+    super(context, attrs);
+
+    // Carousels are generally fixed height. Using fixed size is a small optimization we can make
+    // in that case. Subclasses should disable this if their models have varying heights.
+    setHasFixedSize(true);
+
+    layoutManager = createLayoutManager();
+    if (layoutManager instanceof GridLayoutManager) {
+      GridLayoutManager gridLayoutManager = (GridLayoutManager) layoutManager;
+      controller.setSpanCount(gridLayoutManager.getSpanCount());
+      gridLayoutManager.setSpanSizeLookup(controller.getSpanSizeLookup());
+    }
+    setLayoutManager(layoutManager);
+  }
+
+  /**
+   * Create the layout manager to use for this carousel. By default this is a horizontal {@link
+   * LinearLayoutManager}. If a {@link GridLayoutManager} is returned the nested controller is
+   * configured to use its span count.
+   * <p>
+   * This is called from the constructor, so fields declared in a subclass are not initialized yet
+   * when it runs. An override must only depend on the context and on constants, not on state of
+   * the subclass.
+   */
+  protected LinearLayoutManager createLayoutManager() {
+    return new LinearLayoutManager(getContext(), LinearLayoutManager.HORIZONTAL, false);
+  }
+
+  /**
+   * Set how many views are expected to be visible on screen at once. This is used to set the
+   * initial prefetch item count on the layout manager, so that nested views can be created and
+   * bound ahead of time when the carousel is about to be scrolled on screen.
+   * <p>
+   * A fractional value may be used if a partial view is expected to be visible. A value of 0 or
+   * less disables the hint.
+   */
+  public void setNumViewsToShowOnScreen(float viewCount) {
+    if (viewCount > 0) {
+      layoutManager.setInitialPrefetchItemCount((int) Math.ceil(viewCount));
+    }
+  }
+
+  /**
+   * Set the models to show in this carousel. They are diffed against the models that were
+   * previously set, if any.
+   */
+  public void setModels(List<? extends EpoxyModel<?>> models) {
+    // A carousel can be bound and have its nested views prefetched before it is attached, so the
+    // shared pool is set up front to make sure those views come from and go to the shared pool.
+    if (!hasCustomViewPool) {
+      View poolOwner = getSharedViewPoolOwner();
+      if (poolOwner != null) {
+        useSharedViewPool(poolOwner);
+      }
+    }
+
+    controller.setModels(models);
+
+    if (getAdapter() != controller.getAdapter()) {
+      // The adapter is only set once models are added, so that the initial set of models is shown
+      // without item animations.
+      swapAdapter(controller.getAdapter(), false);
+    }
+  }
+
+  /**
+   * Remove all models and recycle their views. This should be called when the carousel is unbound
+   * so that its views can be used by other carousels sharing the same view pool.
+   */
+  public void clear() {
+    if (getAdapter() == null) {
+      return;
+    }
+
+    // We use swapAdapter instead of setAdapter so that the view pool is not cleared.
+    // 'removeAndRecycleExistingViews=true' is used since the carousel is going off screen and
+    // these views can now be recycled to be used in another carousel.
+    swapAdapter(null, true);
+
+    // The adapter is detached at this point so the removals are not dispatched to the view, but
+    // the nested controller is reset so the next models set are diffed against an empty list.
+    controller.setModels(Collections.<EpoxyModel<?>>emptyList());
+  }
+
+  /** The controller used to show the models set on this carousel. */
+  public EpoxyController getController() {
+    return controller;
+  }
+
+  @Override
+  public void setRecycledViewPool(RecycledViewPool pool) {
+    hasCustomViewPool = true;
+    super.setRecycledViewPool(pool);
+  }
+
+  @Override
+  protected void onAttachedToWindow() {
+    super.onAttachedToWindow();
+
+    // The shared pool could not be found when models were set if this carousel's context is not
+    // an activity, so it is set from the window's root view now that it is attached.
+    if (!hasCustomViewPool) {
+      useSharedViewPool(getRootView());
+    }
+  }
+
+  private void useSharedViewPool(View poolOwner) {
+    super.setRecycledViewPool(getSharedViewPool(poolOwner));
+    hasCustomViewPool = true;
+  }
+
+  /**
+   * The view to keep the shared pool on. Once attached this is the root view of the window. Before
+   * that it is the decor view of the activity that this carousel was created with, which is the
+   * same view for carousels in an activity's window.
+   */
+  @Nullable
+  private View getSharedViewPoolOwner() {
+    if (ViewCompat.isAttachedToWindow(this)) {
+      return getRootView();
+    }
+
+    Context context = getContext();
+    while (context instanceof ContextWrapper) {
+      if (context instanceof Activity) {
+        return ((Activity) context).getWindow().getDecorView();
+      }
+      context = ((ContextWrapper) context).getBaseContext();
+    }
+    return null;
+  }
+
+  /**
+   * The pool is kept as a tag on the window's root view so that it is shared by all carousels in
+   * the window and has the same lifetime as the views that use it.
+   */
+  private static RecycledViewPool getSharedViewPool(View rootView) {
+    RecycledViewPool pool =
+        (RecycledViewPool) rootView.getTag(R.id.epoxy_carousel_recycled_view_pool);
+
+    if (pool == null) {
+      pool = new RecycledViewPool();
+      rootView.setTag(R.id.epoxy_carousel_recycled_view_pool, pool);
+    }
+
+    return pool;
+  }
+}
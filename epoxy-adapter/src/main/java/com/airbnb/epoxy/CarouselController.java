@@ -0,0 +1,24 @@
+package com.airbnb.epoxy;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The controller owned by a {@link Carousel}. Unlike {@link SimpleEpoxyController} models are
+ * always built synchronously, so that the adapter is populated before the parent adapter restores
+ * the carousel's saved scroll state. The controller is kept for the lifetime of the carousel so
+ * that each new list of models is diffed against the previous one.
+ */
+class CarouselController extends EpoxyController {
+  private List<? extends EpoxyModel<?>> currentModels = Collections.emptyList();
+
+  void setModels(List<? extends EpoxyModel<?>> models) {
+    currentModels = models;
+    requestImmediateModelBuild();
+  }
+
+  @Override
+  protected void buildModels() {
+    add(currentModels);
+  }
+}
@@ -0,0 +1,113 @@
+package com.airbnb.epoxy;
+
+import android.content.Context;
+import android.support.v7.widget.RecyclerView;
+import android.view.ViewGroup;
+import android.view.ViewGroup.LayoutParams;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A model that shows a horizontally scrolling list of nested models in a {@link Carousel}.
+ * <p>
+ * The carousel diffs the nested models each time this model is rebound while on screen, and all
+ * carousels in a window share a view pool for the nested views. The scroll position of each
+ * carousel is saved by this model's id, so it is restored when the carousel is scrolled back on
+ * screen or when the adapter's state is restored.
+ * <p>
+ * Subclasses may override {@link #createCarousel(Context)} to use a customized {@link Carousel}.
+ */
+public class CarouselModel extends EpoxyModelWithView<Carousel> {
+  private List<? extends EpoxyModel<?>> models = Collections.emptyList();
+  private float numViewsToShowOnScreen;
+
+  /** The models to show in the carousel. Each model must have a unique id set. */
+  public CarouselModel models(List<? extends EpoxyModel<?>> models) {
+    onMutation();
+    this.models = models;
+    return this;
+  }
+
+  public List<? extends EpoxyModel<?>> models() {
+    return models;
+  }
+
+  /**
+   * Hint for how many views are expected to be visible at once. This is used to prefetch nested
+   * views before the carousel is scrolled on screen.
+   *
+   * @see Carousel#setNumViewsToShowOnScreen(float)
+   */
+  public CarouselModel numViewsToShowOnScreen(float viewCount) {
+    onMutation();
+    numViewsToShowOnScreen = viewCount;
+    return this;
+  }
+
+  public float numViewsToShowOnScreen() {
+    return numViewsToShowOnScreen;
+  }
+
+  @Override
+  protected Carousel buildView(ViewGroup parent) {
+    Carousel carousel = createCarousel(parent.getContext());
+    // When used in an EpoxyModelGroup the layout params of the view stub are used instead
+    if (parent instanceof RecyclerView && carousel.getLayoutParams() == null) {
+      carousel.setLayoutParams(
+          new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT));
+    }
+    return carousel;
+  }
+
+  /** Create a new carousel view. Subclasses can override this to customize the carousel. */
+  protected Carousel createCarousel(Context context) {
+    return new Carousel(context);
+  }
+
+  @Override
+  public void bind(Carousel carousel) {
+    carousel.setNumViewsToShowOnScreen(numViewsToShowOnScreen);
+    carousel.setModels(models);
+  }
+
+  @Override
+  public void unbind(Carousel carousel) {
+    carousel.clear();
+  }
+
+  @Override
+  public boolean shouldSaveViewState() {
+    // Save the state of the scroll position
+    return true;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof CarouselModel)) {
+      return false;
+    }
+    if (!super.equals(o)) {
+      return false;
+    }
+
+    CarouselModel that = (CarouselModel) o;
+
+    if (Float.compare(that.numViewsToShowOnScreen, numViewsToShowOnScreen) != 0) {
+      return false;
+    }
+    return models.equals(that.models);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = super.hashCode();
+    result = 31 * result + models.hashCode();
+    result = 31 * result + (numViewsToShowOnScreen != +0.0f
+        ? Float.floatToIntBits(numViewsToShowOnScreen) : 0);
+    return result;
+  }
+}
@@ -0,0 +1,128 @@
+package com.airbnb.epoxy;
+
+import android.os.Build;
+import android.support.annotation.Nullable;
+import android.support.annotation.RequiresApi;
+import android.view.Choreographer;
+import android.view.Choreographer.FrameCallback;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ModelBuildScheduler} that runs builds in a {@link Choreographer} frame callback, instead
+ * of at an arbitrary point between frames. Frame callbacks run in the animation phase of a frame,
+ * after input has been processed and before layout and drawing, so the build's changes are laid
+ * out and drawn in the same frame that it runs in.
+ * <p>
+ * Requests are coalesced, so there is at most one pending build no matter how often builds are
+ * requested. The time each build takes is measured, and if builds are expensive they are spaced
+ * out over several frames so that frequent requests, such as from typing or from a stream of
+ * network updates, don't take up most of every frame. Builds that take less than half a frame are
+ * run on the next frame. Slower builds are spaced so that on average they use no more than half of
+ * each frame, up to the maximum number of frames between builds. The length of a frame is based on
+ * the display's refresh rate.
+ * <p>
+ * This must be created on the main thread.
+ */
+@RequiresApi(Build.VERSION_CODES.JELLY_BEAN)
+public class ChoreographerModelBuildScheduler implements ModelBuildScheduler {
+  private static final int DEFAULT_MAX_FRAMES_BETWEEN_BUILDS = 4;
+
+  private final Choreographer choreographer = Choreographer.getInstance();
+  private final int maxFramesBetweenBuilds;
+  @Nullable private Runnable pendingBuild;
+  private boolean frameCallbackPosted;
+  /** The pending build is not run on any frame that starts before this time. */
+  private long earliestBuildTimeNanos;
+  private long lastBuildFinishedNanos;
+  /** A moving average of how long builds take, used to decide how far apart to space builds. */
+  private long averageBuildNanos;
+
+  private final FrameCallback frameCallback = new FrameCallback() {
+    @Override
+    public void doFrame(long frameTimeNanos) {
+      frameCallbackPosted = false;
+      if (pendingBuild == null) {
+        return;
+      }
+
+      if (frameTimeNanos < earliestBuildTimeNanos) {
+        postFrameCallback(earliestBuildTimeNanos - frameTimeNanos);
+        return;
+      }
+
+      Runnable build = pendingBuild;
+      pendingBuild = null;
+      build.run();
+    }
+  };
+
+  public ChoreographerModelBuildScheduler() {
+    this(DEFAULT_MAX_FRAMES_BETWEEN_BUILDS);
+  }
+
+  /**
+   * @param maxFramesBetweenBuilds The most frames that builds are spaced apart by, no matter how
+   *                               long they take. Must be at least 1.
+   */
+  public ChoreographerModelBuildScheduler(int maxFramesBetweenBuilds) {
+    if (maxFramesBetweenBuilds < 1) {
+      throw new IllegalArgumentException(
+          "Max frames between builds must be at least 1: " + maxFramesBetweenBuilds);
+    }
+
+    this.maxFramesBetweenBuilds = maxFramesBetweenBuilds;
+  }
+
+  @Override
+  public void scheduleBuild(Runnable buildRunnable, int delayMs) {
+    pendingBuild = buildRunnable;
+
+    long spacedBuildTimeNanos =
+        lastBuildFinishedNanos + (getFramesBetweenBuilds() - 1) * FrameInterval.getNanos();
+    long requestedBuildTimeNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+    earliestBuildTimeNanos = Math.max(spacedBuildTimeNanos, requestedBuildTimeNanos);
+
+    if (!frameCallbackPosted) {
+      postFrameCallback(earliestBuildTimeNanos - System.nanoTime());
+    }
+  }
+
+  @Override
+  public void cancelBuild(Runnable buildRunnable) {
+    if (pendingBuild != buildRunnable) {
+      return;
+    }
+
+    pendingBuild = null;
+    if (frameCallbackPosted) {
+      choreographer.removeFrameCallback(frameCallback);
+      frameCallbackPosted = false;
+    }
+  }
+
+  @Override
+  public void onBuildFinished(long durationNanos) {
+    lastBuildFinishedNanos = System.nanoTime();
+    averageBuildNanos = averageBuildNanos == 0
+        ? durationNanos
+        : (averageBuildNanos * 3 + durationNanos) / 4;
+  }
+
+  /** How many frames apart builds should be, based on how long they have recently taken. */
+  int getFramesBetweenBuilds() {
+    long frameIntervalNanos = FrameInterval.getNanos();
+    long frames = (2 * averageBuildNanos + frameIntervalNanos - 1) / frameIntervalNanos;
+    return (int) Math.max(1, Math.min(frames, maxFramesBetweenBuilds));
+  }
+
+  private void postFrameCallback(long delayNanos) {
+    long delayMs = TimeUnit.NANOSECONDS.toMillis(delayNanos);
+    if (delayMs > 0) {
+      choreographer.postFrameCallbackDelayed(frameCallback, delayMs);
+    } else {
+      choreographer.postFrameCallback(frameCallback);
+    }
+    frameCallbackPosted = true;
+  }
+}
@@ -0,0 +1,45 @@
+package com.airbnb.epoxy;
+
+import android.support.annotation.Nullable;
+
+/**
+ * Decides whether data set on a {@link TypedEpoxyController} (or {@link Typed2EpoxyController},
+ * {@link Typed3EpoxyController}, and {@link Typed4EpoxyController}) is the same as the data that
+ * was previously set. If it is, the model build is skipped, since it would build the same models.
+ * <p>
+ * Use one of the provided policies, or subclass this to compare data another way, such as by a
+ * version number on the data.
+ */
+public abstract class DataEqualityPolicy {
+
+  /** Models are always rebuilt when data is set. This is the default. */
+  public static final DataEqualityPolicy NEVER_EQUAL = new DataEqualityPolicy() {
+    @Override
+    public boolean isSameData(@Nullable Object previousData, @Nullable Object newData) {
+      return false;
+    }
+  };
+
+  /** Models are rebuilt unless the same data instance is set again. */
+  public static final DataEqualityPolicy IDENTITY = new DataEqualityPolicy() {
+    @Override
+    public boolean isSameData(@Nullable Object previousData, @Nullable Object newData) {
+      return previousData == newData;
+    }
+  };
+
+  /** Models are rebuilt unless the data is equal to the previous data. */
+  public static final DataEqualityPolicy EQUALS = new DataEqualityPolicy() {
+    @Override
+    public boolean isSameData(@Nullable Object previousData, @Nullable Object newData) {
+      return previousData == null ? newData == null : previousData.equals(newData);
+    }
+  };
+
+  /**
+   * Return true if the new data would build the same models as the previous data. For controllers
+   * with multiple data arguments this is called for each argument, and models are only rebuilt if
+   * any argument is not the same.
+   */
+  public abstract boolean isSameData(@Nullable Object previousData, @Nullable Object newData);
+}
@@ -6,14 +6,38 @@ import android.support.v7.widget.RecyclerView;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Helper to track changes in the models list.
+ * <p>
+ * A diff is normally built all at once with {@link #notifyModelChanges()}. For very large lists a
+ * diff can instead be built in steps with {@link #startDiff(List)} and {@link
+ * #continueDiff(long)}, which stops once a time budget is used up so that the rest of the diff can
+ * be continued later. The adapter keeps showing its current models while the diff is in progress,
+ * and the current state tracked here stays valid for those models until {@link #dispatchDiff()} is
+ * called once the new models are set on the adapter.
  */
 class DiffHelper {
+  /** Passed as the deadline to build a diff without stopping. */
+  private static final long NO_DEADLINE = Long.MAX_VALUE;
+  /** How many items are processed between checks of the deadline when building a diff in steps. */
+  private static final int ITEMS_PER_DEADLINE_CHECK = 32;
+  /**
+   * How many models are compared on several threads between checks of the deadline, when changes
+   * are found in parallel while building a diff in steps.
+   */
+  private static final int PARALLEL_COMPARISONS_PER_DEADLINE_CHECK = 2048;
+
+  private static final int STEP_COPY_CURRENT_STATE = 0;
+  private static final int STEP_BUILD_NEW_STATE = 1;
+  private static final int STEP_REMOVALS = 2;
+  private static final int STEP_INSERTIONS = 3;
+  private static final int STEP_MOVES = 4;
+  private static final int STEP_CHANGES = 5;
+  private static final int STEP_DONE = 6;
+
   private ArrayList<ModelState> oldStateList = new ArrayList<>();
   // Using a HashMap instead of a LongSparseArray to
   // have faster look up times at the expense of memory
@@ -22,7 +46,29 @@ class DiffHelper {
   private Map<Long, ModelState> currentStateMap = new HashMap<>();
   private final BaseEpoxyAdapter adapter;
   private final boolean immutableModels;
-
+  @Nullable private LargeChangePolicy largeChangePolicy;
+
+  // The states being diffed. When a diff is built all at once these are the same as the lists
+  // above, but when it is built in steps they are separate so that the current state is unchanged
+  // until the diff is dispatched.
+  private ArrayList<ModelState> diffOldStates;
+  private ArrayList<ModelState> diffNewStates;
+  private Map<Long, ModelState> diffNewStateMap;
+  private UpdateOpHelper diffOps;
+  /** The models being diffed in steps, or null if no diff is in progress. */
+  @Nullable private List<? extends EpoxyModel<?>> diffNewModels;
+  private int diffStep = STEP_DONE;
+  // Progress within the current step, so that it can be resumed.
+  private int cursor;
+  private int oldCursor;
+  @Nullable private ModelState nextOldItem;
+  /**
+   * Whether each new state's model changed, when the changes are found on several threads. See
+   * {@link Epoxy#setParallelDiffThreshold(int)}.
+   */
+  @Nullable private boolean[] changedFlags;
+  /** The flags before this position in {@link #changedFlags} have been computed. */
+  private int changedFlagsEnd;
 
   DiffHelper(BaseEpoxyAdapter adapter, boolean immutableModels) {
     this.adapter = adapter;
@@ -81,8 +127,10 @@ class DiffHelper {
 
       List<ModelState> modelsToRemove =
           currentStateList.subList(positionStart, positionStart + itemCount);
+      ViewHolderState viewHolderState = adapter.getViewHolderState();
       for (ModelState model : modelsToRemove) {
         currentStateMap.remove(model.id);
+        viewHolderState.removeState(model.id);
       }
       modelsToRemove.clear();
 
@@ -123,20 +171,181 @@ class DiffHelper {
     }
   };
 
+  void setLargeChangePolicy(@Nullable LargeChangePolicy largeChangePolicy) {
+    this.largeChangePolicy = largeChangePolicy;
+  }
+
   /**
    * Set the current list of models. The diff callbacks will be notified of the changes between the
    * current list and the last list that was set.
+   *
+   * @return How the changes were notified.
    */
-  void notifyModelChanges() {
+  @LargeChangePolicy.Handling
+  int notifyModelChanges() {
+    cancelDiff();
+
+    prepareStateForDiff();
+    diffOldStates = oldStateList;
+    diffNewStates = currentStateList;
+    diffNewStateMap = currentStateMap;
     UpdateOpHelper updateOpHelper = new UpdateOpHelper();
+    diffOps = updateOpHelper;
+    startStep(STEP_REMOVALS);
+
+    runDiffSteps(NO_DEADLINE);
+    clearDiff();
 
-    buildDiff(updateOpHelper);
+    return dispatch(updateOpHelper);
+  }
+
+  /**
+   * Start building a diff between the adapter's current models and the given models, to be
+   * continued with {@link #continueDiff(long)}. The adapter must keep its current models until the
+   * diff is done, and must not change them in the meantime, such as by moving a model. If a diff is
+   * already in progress it is cancelled.
+   */
+  void startDiff(List<? extends EpoxyModel<?>> newModels) {
+    cancelDiff();
+
+    diffNewModels = newModels;
+    diffOldStates = new ArrayList<>(currentStateList.size());
+    diffNewStates = new ArrayList<>(newModels.size());
+    diffNewStateMap = new HashMap<>(newModels.size());
+    diffOps = new UpdateOpHelper();
+    startStep(STEP_COPY_CURRENT_STATE);
+  }
+
+  /**
+   * Continue building the diff started with {@link #startDiff(List)} until it is done or the
+   * deadline is reached. Some progress is always made, even if the deadline has already passed.
+   *
+   * @param deadlineNanos A time in the {@link System#nanoTime()} time base.
+   * @return True if the diff is done and the new models can be set on the adapter, at which point
+   * {@link #dispatchDiff()} should be called.
+   */
+  boolean continueDiff(long deadlineNanos) {
+    if (diffNewModels == null) {
+      throw new IllegalStateException("No diff is in progress");
+    }
+
+    return runDiffSteps(deadlineNanos);
+  }
+
+  /**
+   * Notify the changes found by a diff built with {@link #continueDiff(long)}. The adapter must
+   * have set the new models as its current models before this is called.
+   *
+   * @return How the changes were notified.
+   */
+  @LargeChangePolicy.Handling
+  int dispatchDiff() {
+    if (diffNewModels == null || diffStep != STEP_DONE) {
+      throw new IllegalStateException("The diff is not done");
+    }
+
+    oldStateList = diffOldStates;
+    oldStateMap.clear();
+    currentStateList = diffNewStates;
+    currentStateMap = diffNewStateMap;
+    UpdateOpHelper updateOpHelper = diffOps;
+    clearDiff();
+
+    return dispatch(updateOpHelper);
+  }
+
+  /** Stop the diff being built in steps, if there is one. The current state is unchanged. */
+  void cancelDiff() {
+    clearDiff();
+  }
+
+  /** Whether a diff started with {@link #startDiff(List)} has not been dispatched yet. */
+  boolean isDiffInProgress() {
+    return diffNewModels != null;
+  }
+
+  private void clearDiff() {
+    diffNewModels = null;
+    diffOldStates = null;
+    diffNewStates = null;
+    diffNewStateMap = null;
+    diffOps = null;
+    nextOldItem = null;
+    changedFlags = null;
+    changedFlagsEnd = 0;
+    diffStep = STEP_DONE;
+  }
+
+  @LargeChangePolicy.Handling
+  private int dispatch(UpdateOpHelper updateOpHelper) {
+    if (updateOpHelper.hasRemovals()) {
+      pruneViewStateOfRemovedModels();
+    }
+
+    int handling = getHandling(updateOpHelper);
 
     // Send out the proper notify calls for the diff. We remove our
     // observer first so that we don't react to our own notify calls
     adapter.unregisterAdapterDataObserver(observer);
-    notifyChanges(updateOpHelper);
+    if (handling == LargeChangePolicy.REFRESH) {
+      adapter.notifyDataSetChanged();
+    } else {
+      notifyChanges(updateOpHelper);
+    }
     adapter.registerAdapterDataObserver(observer);
+
+    return handling;
+  }
+
+  @LargeChangePolicy.Handling
+  private int getHandling(UpdateOpHelper updateOpHelper) {
+    if (largeChangePolicy == null || updateOpHelper.opList.isEmpty()) {
+      return LargeChangePolicy.NOTIFY_CHANGES;
+    }
+
+    // Items in the new list that weren't inserted, changed, or moved were kept in place. An item
+    // that was both moved and changed is counted twice, so this may undercount them.
+    int maxItemCount = Math.max(oldStateList.size(), currentStateList.size());
+    int unchangedCount = Math.max(0, currentStateList.size() - updateOpHelper.getNumInsertions()
+        - updateOpHelper.getNumUpdates() - updateOpHelper.getNumMoves());
+    float changedFraction = 1 - (float) unchangedCount / maxItemCount;
+
+    return largeChangePolicy.getHandling(updateOpHelper.opList.size(),
+        updateOpHelper.getNumMoves(), changedFraction);
+  }
+
+  /**
+   * Discard the saved view state of models that were removed in the last diff. Otherwise the state
+   * of every model that was ever shown would be kept for the lifetime of the adapter.
+   */
+  private void pruneViewStateOfRemovedModels() {
+    ViewHolderState viewHolderState = adapter.getViewHolderState();
+    if (!viewHolderState.hasSavedStates()) {
+      return;
+    }
+
+    for (ModelState state : oldStateList) {
+      // Items in the old list without a pair were removed
+      if (state.pair == null) {
+        viewHolderState.removeState(state.id);
+      }
+    }
+  }
+
+  /** Whether a model with the given id is in the current list of models. */
+  boolean hasModelWithId(long id) {
+    return currentStateMap.containsKey(id);
+  }
+
+  /**
+   * The position of the model with the given id in the current list of models, or {@link
+   * RecyclerView#NO_POSITION} if there is no model with that id. The positions of the current
+   * states are kept up to date by the adapter observer, so this is valid after moves as well as
+   * after a diff.
+   */
+  int getPositionForId(long id) {
+    ModelState state = currentStateMap.get(id);
+    return state != null ? state.position : RecyclerView.NO_POSITION;
   }
 
   private void notifyChanges(UpdateOpHelper opHelper) {
@@ -166,30 +375,82 @@ class DiffHelper {
   }
 
   /**
-   * Create a list of operations that define the difference between {@link #oldStateList} and {@link
-   * #currentStateList}.
+   * Run the steps that create a list of operations that define the difference between {@link
+   * #diffOldStates} and {@link #diffNewStates}, stopping if the deadline is reached.
+   *
+   * @return True if all steps are done.
    */
-  private UpdateOpHelper buildDiff(UpdateOpHelper updateOpHelper) {
-    prepareStateForDiff();
-
+  private boolean runDiffSteps(long deadlineNanos) {
     // The general approach is to first search for removals, then additions, and lastly changes.
     // Focusing on one type of operation at a time makes it easy to coalesce batch changes.
     // When we identify an operation and add it to the
-    // result list we update the positions of items in the oldStateList to reflect
+    // result list we update the positions of items in the old state list to reflect
     // the change, this way subsequent operations will use the correct, updated positions.
-    collectRemovals(updateOpHelper);
+    while (diffStep != STEP_DONE) {
+      boolean stepDone;
+      switch (diffStep) {
+        case STEP_COPY_CURRENT_STATE:
+          stepDone = copyCurrentState(deadlineNanos);
+          break;
+        case STEP_BUILD_NEW_STATE:
+          stepDone = buildNewState(deadlineNanos);
+          break;
+        case STEP_REMOVALS:
+          stepDone = collectRemovals(diffOps, deadlineNanos);
+          break;
+        case STEP_INSERTIONS:
+          stepDone = collectInsertions(diffOps, deadlineNanos);
+          break;
+        case STEP_MOVES:
+          stepDone = collectMoves(diffOps, deadlineNanos);
+          break;
+        case STEP_CHANGES:
+          stepDone = collectChanges(diffOps, deadlineNanos);
+          break;
+        default:
+          throw new IllegalStateException("Unknown diff step: " + diffStep);
+      }
+
+      if (!stepDone) {
+        return false;
+      }
+
+      startStep(getNextStep(diffStep));
+    }
 
-    // Only need to check for insertions if new list is bigger
-    boolean hasInsertions =
-        oldStateList.size() - updateOpHelper.getNumRemovals() != currentStateList.size();
-    if (hasInsertions) {
-      collectInsertions(updateOpHelper);
+    return true;
+  }
+
+  private int getNextStep(int step) {
+    if (step == STEP_REMOVALS) {
+      // Only need to check for insertions if new list is bigger
+      boolean hasInsertions =
+          diffOldStates.size() - diffOps.getNumRemovals() != diffNewStates.size();
+      return hasInsertions ? STEP_INSERTIONS : STEP_MOVES;
     }
 
-    collectMoves(updateOpHelper);
-    collectChanges(updateOpHelper);
+    return step + 1;
+  }
+
+  private void startStep(int step) {
+    diffStep = step;
+    cursor = 0;
+    oldCursor = 0;
+    nextOldItem = null;
+    changedFlags = null;
+    changedFlagsEnd = 0;
+  }
 
-    return updateOpHelper;
+  /**
+   * Whether a step should stop so the diff can be continued later. The deadline is only checked
+   * periodically to limit the overhead of getting the time, and never before any items have been
+   * processed so that progress is always made.
+   */
+  private static boolean shouldStop(int itemsProcessed, long deadlineNanos) {
+    return deadlineNanos != NO_DEADLINE
+        && itemsProcessed > 0
+        && itemsProcessed % ITEMS_PER_DEADLINE_CHECK == 0
+        && System.nanoTime() >= deadlineNanos;
   }
 
   private void prepareStateForDiff() {
@@ -214,23 +475,72 @@ class DiffHelper {
       modelState.pair = null;
     }
 
-    int modelCount = adapter.getCurrentModels().size();
+    List<? extends EpoxyModel<?>> models = adapter.getCurrentModels();
+    int modelCount = models.size();
     currentStateList.ensureCapacity(modelCount);
 
+    // Mutable models are compared by hashCode, which can be computed on several threads for
+    // large lists
+    int[] hashCodes = !immutableModels && Epoxy.shouldDiffInParallel(modelCount)
+        ? ParallelDiffWorker.computeHashCodes(models) : null;
+
     for (int i = 0; i < modelCount; i++) {
-      currentStateList.add(createStateForPosition(i));
+      currentStateList.add(createState(models, i, currentStateMap, hashCodes));
+    }
+  }
+
+  /**
+   * When a diff is built in steps the current state is copied, instead of being reused as the old
+   * state, since it must stay valid for the adapter's models until the diff is dispatched.
+   */
+  private boolean copyCurrentState(long deadlineNanos) {
+    int size = currentStateList.size();
+    int itemsProcessed = 0;
+    for (; cursor < size; cursor++) {
+      if (shouldStop(itemsProcessed++, deadlineNanos)) {
+        return false;
+      }
+
+      diffOldStates.add(currentStateList.get(cursor).copyForDiff());
     }
+
+    return true;
+  }
+
+  private boolean buildNewState(long deadlineNanos) {
+    int size = diffNewModels.size();
+    int itemsProcessed = 0;
+    for (; cursor < size; cursor++) {
+      if (shouldStop(itemsProcessed++, deadlineNanos)) {
+        return false;
+      }
+
+      diffNewStates.add(createState(diffNewModels, cursor, diffNewStateMap, null));
+    }
+
+    return true;
   }
 
   private ModelState createStateForPosition(int position) {
-    EpoxyModel<?> model = adapter.getCurrentModels().get(position);
+    return createState(adapter.getCurrentModels(), position, currentStateMap, null);
+  }
+
+  /**
+   * @param hashCodes The hashCode of each model if they were already computed, otherwise null to
+   *                  compute it when needed.
+   */
+  private ModelState createState(List<? extends EpoxyModel<?>> models, int position,
+      Map<Long, ModelState> stateMap, @Nullable int[] hashCodes) {
+    EpoxyModel<?> model = models.get(position);
     model.addedToAdapter = true;
-    ModelState state = ModelState.build(model, position, immutableModels);
+    ModelState state = hashCodes != null
+        ? ModelState.build(model, position, immutableModels, hashCodes[position])
+        : ModelState.build(model, position, immutableModels);
 
-    ModelState previousValue = currentStateMap.put(state.id, state);
+    ModelState previousValue = stateMap.put(state.id, state);
     if (previousValue != null) {
       int previousPosition = previousValue.position;
-      EpoxyModel<?> previousModel = adapter.getCurrentModels().get(previousPosition);
+      EpoxyModel<?> previousModel = models.get(previousPosition);
       throw new IllegalStateException("Two models have the same ID. ID's must be unique!"
           + " Model at position " + position + ": " + model
           + " Model at position " + previousPosition + ": " + previousModel);
@@ -241,11 +551,18 @@ class DiffHelper {
 
   /**
    * Find all removal operations and add them to the result list. The general strategy here is to
-   * walk through the {@link #oldStateList} and check for items that don't exist in the new list.
+   * walk through the {@link #diffOldStates} and check for items that don't exist in the new list.
    * Walking through it in order makes it easy to batch adjacent removals.
    */
-  private void collectRemovals(UpdateOpHelper helper) {
-    for (ModelState state : oldStateList) {
+  private boolean collectRemovals(UpdateOpHelper helper, long deadlineNanos) {
+    int size = diffOldStates.size();
+    int itemsProcessed = 0;
+    for (; cursor < size; cursor++) {
+      if (shouldStop(itemsProcessed++, deadlineNanos)) {
+        return false;
+      }
+
+      ModelState state = diffOldStates.get(cursor);
       // Update the position of the item to take into account previous removals,
       // so that future operations will reference the correct position
       state.position -= helper.getNumRemovals();
@@ -253,7 +570,7 @@ class DiffHelper {
       // This is our first time going through the list, so we
       // look up the item with the matching id in the new
       // list and hold a reference to it so that we can access it quickly in the future
-      state.pair = currentStateMap.get(state.id);
+      state.pair = diffNewStateMap.get(state.id);
       if (state.pair != null) {
         state.pair.pair = state;
         continue;
@@ -261,20 +578,27 @@ class DiffHelper {
 
       helper.remove(state.position);
     }
+
+    return true;
   }
 
   /**
    * Find all insertion operations and add them to the result list. The general strategy here is to
-   * walk through the {@link #currentStateList} and check for items that don't exist in the old
+   * walk through the {@link #diffNewStates} and check for items that don't exist in the old
    * list. Walking through it in order makes it easy to batch adjacent insertions.
    */
-  private void collectInsertions(UpdateOpHelper helper) {
-    Iterator<ModelState> oldItemIterator = oldStateList.iterator();
+  private boolean collectInsertions(UpdateOpHelper helper, long deadlineNanos) {
+    int size = diffNewStates.size();
+    int itemsProcessed = 0;
+    for (; cursor < size; cursor++) {
+      if (shouldStop(itemsProcessed++, deadlineNanos)) {
+        return false;
+      }
 
-    for (ModelState itemToInsert : currentStateList) {
+      ModelState itemToInsert = diffNewStates.get(cursor);
       if (itemToInsert.pair != null) {
         // Update the position of the next item in the old list to take any insertions into account
-        ModelState nextOldItem = getNextItemWithPair(oldItemIterator);
+        ModelState nextOldItem = getNextOldItemWithPair();
         if (nextOldItem != null) {
           nextOldItem.position += helper.getNumInsertions();
         }
@@ -283,13 +607,44 @@ class DiffHelper {
 
       helper.add(itemToInsert.position);
     }
+
+    return true;
   }
 
   /**
    * Check if any items have had their values changed, batching if possible.
    */
-  private void collectChanges(UpdateOpHelper helper) {
-    for (ModelState newItem : currentStateList) {
+  private boolean collectChanges(UpdateOpHelper helper, long deadlineNanos) {
+    int size = diffNewStates.size();
+    if (changedFlags == null && immutableModels && Epoxy.shouldDiffInParallel(size)) {
+      // Comparing models is the most expensive part of diffing a large list, so the comparisons
+      // are done on several threads ahead of the cursor, and the results are batched into
+      // operations below.
+      changedFlags = new boolean[size];
+      changedFlagsEnd = 0;
+    }
+
+    int itemsProcessed = 0;
+    for (; cursor < size; cursor++) {
+      if (shouldStop(itemsProcessed, deadlineNanos)) {
+        return false;
+      }
+
+      if (changedFlags != null && cursor == changedFlagsEnd) {
+        // A block of comparisons can't be paused, so only one block is done between checks of the
+        // deadline. Without a deadline all of them are done at once.
+        if (itemsProcessed > 0 && deadlineNanos != NO_DEADLINE
+            && System.nanoTime() >= deadlineNanos) {
+          return false;
+        }
+
+        changedFlagsEnd = deadlineNanos == NO_DEADLINE
+            ? size : Math.min(size, cursor + PARALLEL_COMPARISONS_PER_DEADLINE_CHECK);
+        ParallelDiffWorker.findChangedStates(diffNewStates, cursor, changedFlagsEnd, changedFlags);
+      }
+      itemsProcessed++;
+
+      ModelState newItem = diffNewStates.get(cursor);
       ModelState previousItem = newItem.pair;
       if (previousItem == null) {
         continue;
@@ -307,7 +662,14 @@ class DiffHelper {
                   previousItem.position);
         }
 
-        modelChanged = !previousItem.model.equals(newItem.model);
+        if (changedFlags != null) {
+          modelChanged = changedFlags[cursor];
+        } else {
+          // The same instance is reused when a model is memoized, and since models are immutable
+          // it can't have changed
+          modelChanged = previousItem.model != newItem.model
+              && !previousItem.model.equals(newItem.model);
+        }
       } else {
         modelChanged = previousItem.hashCode != newItem.hashCode;
       }
@@ -316,17 +678,24 @@ class DiffHelper {
         helper.update(newItem.position, previousItem.model);
       }
     }
+
+    return true;
   }
 
   /**
    * Check which items have had a position changed. Recyclerview does not support batching these.
    */
-  private void collectMoves(UpdateOpHelper helper) {
+  private boolean collectMoves(UpdateOpHelper helper, long deadlineNanos) {
     // This walks through both the new and old list simultaneous and checks for position changes.
-    Iterator<ModelState> oldItemIterator = oldStateList.iterator();
-    ModelState nextOldItem = null;
+    // The next old item is kept in a field so that this can be resumed.
+    int size = diffNewStates.size();
+    int itemsProcessed = 0;
+    for (; cursor < size; cursor++) {
+      if (shouldStop(itemsProcessed++, deadlineNanos)) {
+        return false;
+      }
 
-    for (ModelState newItem : currentStateList) {
+      ModelState newItem = diffNewStates.get(cursor);
       if (newItem.pair == null) {
         // This item was inserted. However, insertions are done at the item's final position, and
         // aren't smart about inserting at a different position to take future moves into account.
@@ -355,7 +724,7 @@ class DiffHelper {
       // already iterated through are guaranteed to have their pair
       // be already in the right spot, which won't be affected by future MOVEs.
       if (nextOldItem == null) {
-        nextOldItem = getNextItemWithPair(oldItemIterator);
+        nextOldItem = getNextOldItemWithPair();
 
         // We've already iterated through all old items and moved each
         // item once. However, subsequent moves may have shifted an item out of
@@ -393,7 +762,7 @@ class DiffHelper {
           nextOldItem.position = nextOldItem.pair.position;
           nextOldItem.lastMoveOp = helper.getNumMoves();
 
-          nextOldItem = getNextItemWithPair(oldItemIterator);
+          nextOldItem = getNextOldItemWithPair();
         } else {
           helper.move(newItem.pair.position, newItem.position);
 
@@ -403,6 +772,8 @@ class DiffHelper {
         }
       }
     }
+
+    return true;
   }
 
   /**
@@ -429,20 +800,18 @@ class DiffHelper {
   }
 
   /**
-   * Gets the next item in the list that has a pair, meaning it wasn't inserted or removed.
+   * Gets the next item in the old list that has a pair, meaning it wasn't inserted or removed.
    */
   @Nullable
-  private ModelState getNextItemWithPair(Iterator<ModelState> iterator) {
-    ModelState nextItem = null;
-    while (nextItem == null && iterator.hasNext()) {
-      nextItem = iterator.next();
-
-      if (nextItem.pair == null) {
-        // Skip this one and go on to the next
-        nextItem = null;
+  private ModelState getNextOldItemWithPair() {
+    int size = diffOldStates.size();
+    while (oldCursor < size) {
+      ModelState nextItem = diffOldStates.get(oldCursor++);
+      if (nextItem.pair != null) {
+        return nextItem;
       }
     }
 
-    return nextItem;
+    return null;
   }
 }
@@ -0,0 +1,147 @@
+package com.airbnb.epoxy;
+
+import android.support.annotation.MainThread;
+
+/**
+ * Global configuration for Epoxy.
+ * <p>
+ * This controls the runtime validation done by models generated with "validateEpoxyModelUsage"
+ * enabled. By default every model added to an {@link EpoxyController} is validated, and an
+ * exception is thrown as soon as a model is found to have changed after it was added. That can be
+ * too costly to leave on in a release build, since it recomputes the hashCode of models each time
+ * they are bound and diffed. The options here allow validation to be sampled instead, so that it
+ * can be left on for a subset of users at a small cost.
+ * <p>
+ * It also controls whether very large lists of models are diffed on several threads.
+ * <p>
+ * These settings are expected to be set once when the application is created, and must only be
+ * changed on the main thread.
+ */
+public final class Epoxy {
+  private static int validationSampleRate = 1;
+  private static long validationFrameBudgetNanos;
+  private static boolean swallowValidationExceptions;
+  private static int parallelDiffThreshold;
+
+  private static int buildsSinceLastValidation;
+  private static long frameStartNanos;
+  private static long validationNanosThisFrame;
+
+  private Epoxy() {
+  }
+
+  /**
+   * Only validate the models added in one of every {@code sampleRate} model builds. Models added in
+   * other builds are not validated at all, including when they are later diffed and bound. The
+   * builds are counted across all controllers.
+   * <p>
+   * The default is 1, which validates every build. Set this to 0 to disable validation entirely.
+   */
+  @MainThread
+  public static void setValidationSampleRate(int sampleRate) {
+    if (sampleRate < 0) {
+      throw new IllegalArgumentException("Sample rate cannot be negative: " + sampleRate);
+    }
+
+    validationSampleRate = sampleRate;
+    buildsSinceLastValidation = 0;
+  }
+
+  /**
+   * Limit the time spent checking that model hashCodes have not changed to the given duration in
+   * each frame. Once the budget for a frame is used up, further checks are skipped until the next
+   * frame.
+   * <p>
+   * The default is 0, which does not limit the time spent.
+   */
+  @MainThread
+  public static void setValidationFrameBudgetMs(float budgetMs) {
+    if (budgetMs < 0) {
+      throw new IllegalArgumentException("Budget cannot be negative: " + budgetMs);
+    }
+
+    validationFrameBudgetNanos = (long) (budgetMs * 1_000_000);
+    validationNanosThisFrame = 0;
+  }
+
+  /**
+   * If true, a model that is found to have changed after it was added to a controller is reported
+   * to {@link EpoxyController#onExceptionSwallowed(RuntimeException)} instead of the exception
+   * being thrown. The change is still applied to the model, so the adapter may not be updated
+   * correctly for it.
+   * <p>
+   * The default is false.
+   */
+  @MainThread
+  public static void setSwallowValidationExceptions(boolean swallowExceptions) {
+    swallowValidationExceptions = swallowExceptions;
+  }
+
+  /**
+   * Compare models on several threads when diffing at least this many models. This is intended for
+   * lists of many thousands of models, where comparing each model with its previous version
+   * dominates the time spent diffing. Models are compared with equals when using an {@link
+   * EpoxyController}, or hashed when using an {@link EpoxyAdapter}, so those methods must be safe
+   * to call from a background thread. The rest of the diff is still done on the main thread, which
+   * waits for the comparisons to finish.
+   * <p>
+   * The default is 0, which always diffs on the main thread only.
+   */
+  @MainThread
+  public static void setParallelDiffThreshold(int minModelCount) {
+    if (minModelCount < 0) {
+      throw new IllegalArgumentException("Threshold cannot be negative: " + minModelCount);
+    }
+
+    parallelDiffThreshold = minModelCount;
+  }
+
+  static boolean shouldDiffInParallel(int modelCount) {
+    return parallelDiffThreshold > 0 && modelCount >= parallelDiffThreshold;
+  }
+
+  static boolean shouldSwallowValidationExceptions() {
+    return swallowValidationExceptions;
+  }
+
+  /** Called at the start of each model build to decide if the models in it should be validated. */
+  static boolean sampleBuildForValidation() {
+    if (validationSampleRate == 0) {
+      return false;
+    }
+
+    if (buildsSinceLastValidation == 0) {
+      buildsSinceLastValidation = validationSampleRate - 1;
+      return true;
+    }
+
+    buildsSinceLastValidation--;
+    return false;
+  }
+
+  /**
+   * Whether there is time left in the current frame's validation budget. This is approximate, as
+   * frames are measured as intervals of the display's frame time instead of being aligned to the
+   * display's frames.
+   */
+  static boolean hasValidationTimeRemaining() {
+    if (validationFrameBudgetNanos == 0) {
+      return true;
+    }
+
+    long now = System.nanoTime();
+    if (now - frameStartNanos >= FrameInterval.getNanos()) {
+      frameStartNanos = now;
+      validationNanosThisFrame = 0;
+    }
+
+    return validationNanosThisFrame < validationFrameBudgetNanos;
+  }
+
+  /** Count the time since the given start time against the current frame's validation budget. */
+  static void recordValidationTime(long startNanos) {
+    if (validationFrameBudgetNanos != 0) {
+      validationNanosThisFrame += System.nanoTime() - startNanos;
+    }
+  }
+}
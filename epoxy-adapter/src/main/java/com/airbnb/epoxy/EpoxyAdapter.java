@@ -55,6 +55,11 @@ public abstract class EpoxyAdapter extends BaseEpoxyAdapter {
     diffHelper = new DiffHelper(this, false);
   }
 
+  @Override
+  boolean isModelRemoved(long modelId) {
+    return diffHelper != null && !diffHelper.hasModelWithId(modelId);
+  }
+
   @Override
   EpoxyModel<?> getModelForPosition(int position) {
     EpoxyModel<?> model = models.get(position);
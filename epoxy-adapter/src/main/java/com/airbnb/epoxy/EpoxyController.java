@@ -7,9 +7,11 @@ import android.support.v7.widget.GridLayoutManager.SpanSizeLookup;
 import android.support.v7.widget.RecyclerView;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
 import java.util.Set;
 
 import static com.airbnb.epoxy.ControllerHelperLookup.getHelperForController;
@@ -49,9 +51,31 @@ public abstract class EpoxyController {
   private final EpoxyControllerAdapter adapter = new EpoxyControllerAdapter(this);
   private final ControllerHelper helper = getHelperForController(this);
   private final Handler handler = new Handler();
+  private ModelBuildScheduler buildScheduler = new HandlerModelBuildScheduler();
   private final List<Interceptor> interceptors = new ArrayList<>();
   private ControllerModelList modelsBeingBuilt;
+  /**
+   * The first position of each model in {@link #modelsBeingBuilt}, by identity. This is only used
+   * for debug validations, so it is created the first time it is needed in a build and then updated
+   * incrementally with the models added since the last lookup.
+   */
+  @Nullable private Map<EpoxyModel<?>, Integer> modelPositionsBeingBuilt;
+  /** Models that were added more than once in the current build, by identity. */
+  @Nullable private Set<EpoxyModel<?>> modelsAddedMultipleTimes;
+  /** How many models in {@link #modelsBeingBuilt} are in {@link #modelPositionsBeingBuilt}. */
+  private int indexedModelCount;
+  /** Whether models added in the current build should be validated. See {@link Epoxy}. */
+  private boolean validateModelsBeingBuilt;
   private boolean filterDuplicates;
+  /**
+   * Set if a build was requested while the previous models were still being diffed, so that it can
+   * be run once that diff is done.
+   */
+  private boolean buildRequestedDuringDiff;
+  /** See {@link #startDragSession()}. */
+  private boolean dragSessionActive;
+  /** Set if models were moved or a build was run during a drag session. */
+  private boolean buildRequestedDuringDrag;
   /** Used to time operations and log their duration when in debug mode. */
   private Timer timer = NO_OP_TIMER;
   private EpoxyDiffLogger debugObserver;
@@ -59,6 +83,10 @@ public abstract class EpoxyController {
   private List<ModelInterceptorCallback> modelInterceptorCallbacks;
   private int recyclerViewAttachCount = 0;
   private EpoxyModel<?> stagedModel;
+  /** Models returned by {@link #memo(Object, long, ModelFactory)} in the current build, by key. */
+  private Map<Object, MemoizedModel> memoizedModels = new HashMap<>();
+  /** Models memoized in the previous build, which may be reused by the current build. */
+  private Map<Object, MemoizedModel> previousMemoizedModels = new HashMap<>();
 
   /**
    * Call this to request a model update. The controller will schedule a call to {@link
@@ -80,7 +108,7 @@ public abstract class EpoxyController {
       requestDelayedModelBuild(0);
     } else {
       cancelPendingModelBuild();
-      dispatchModelBuild();
+      dispatchModelBuild(false);
     }
   }
 
@@ -94,7 +122,7 @@ public abstract class EpoxyController {
    * delaying the model build too long is that models will not be in sync with the data or view, and
    * scrolling the view offscreen and back onscreen will cause the model to bind old data.
    * <p>
-   * This will cancel any currently queued request to build models.
+   * This replaces any currently queued request to build models.
    * <p>
    * In most cases you should use {@link #requestModelBuild()} instead of this.
    *
@@ -108,8 +136,21 @@ public abstract class EpoxyController {
           "Cannot call `requestDelayedModelBuild` from inside `buildModels`");
     }
 
+    buildScheduler.scheduleBuild(buildModelsRunnable, delayMs);
+  }
+
+  /**
+   * Builds and diffs models synchronously instead of posting the build. This is used by nested
+   * controllers, such as the one owned by {@link Carousel}, whose models must be set on the adapter
+   * before the parent adapter restores the saved state of the view.
+   */
+  void requestImmediateModelBuild() {
+    if (isBuildingModels()) {
+      throw new IllegalEpoxyUsage("Cannot call `requestModelBuild` from inside `buildModels`");
+    }
+
     cancelPendingModelBuild();
-    handler.postDelayed(buildModelsRunnable, delayMs);
+    dispatchModelBuild(false);
   }
 
   /**
@@ -117,20 +158,67 @@ public abstract class EpoxyController {
    * #requestModelBuild()}.
    */
   public void cancelPendingModelBuild() {
-    handler.removeCallbacks(buildModelsRunnable);
+    buildScheduler.cancelBuild(buildModelsRunnable);
+    buildRequestedDuringDiff = false;
+  }
+
+  /**
+   * Set the strategy used to decide when requested model builds are run. By default builds are
+   * posted to the main thread with a {@link HandlerModelBuildScheduler}. A {@link
+   * ChoreographerModelBuildScheduler} can be used instead to align builds with frames and to space
+   * out expensive builds, or a {@link GlobalModelBuildScheduler} to prioritize builds of visible
+   * controllers over others.
+   * <p>
+   * This should be set before models are first built and before the adapter is attached to a
+   * RecyclerView, such as in the controller's constructor. If models have already been built then
+   * any pending build is cancelled and requested again with the new scheduler.
+   */
+  public void setModelBuildScheduler(ModelBuildScheduler buildScheduler) {
+    if (isBuildingModels()) {
+      throw new IllegalEpoxyUsage(
+          "Cannot call `setModelBuildScheduler` from inside `buildModels`");
+    }
+
+    cancelPendingModelBuild();
+    this.buildScheduler = buildScheduler;
+
+    if (hasBuiltModelsEver) {
+      buildScheduler.scheduleBuild(buildModelsRunnable, 0);
+    }
   }
 
   private final Runnable buildModelsRunnable = new Runnable() {
     @Override
     public void run() {
-      dispatchModelBuild();
+      if (dragSessionActive) {
+        buildRequestedDuringDrag = true;
+        return;
+      }
+
+      if (adapter.isDiffInProgress()) {
+        // Builds are deferred until the previous models are done diffing, instead of cancelling
+        // that diff, so that frequent builds can't prevent a diff from ever finishing.
+        buildRequestedDuringDiff = true;
+        return;
+      }
+
+      dispatchModelBuild(true);
     }
   };
 
-  private void dispatchModelBuild() {
+  /**
+   * @param allowIncrementalDiff True to let the adapter diff the models across several frames if a
+   *                             diff time budget is set, false to always diff them immediately.
+   */
+  private void dispatchModelBuild(boolean allowIncrementalDiff) {
+    long startNanos = System.nanoTime();
+    buildRequestedDuringDiff = false;
     helper.resetAutoModels();
 
     modelsBeingBuilt = new ControllerModelList(getExpectedModelCount());
+    clearModelPositionIndex();
+    validateModelsBeingBuilt = Epoxy.sampleBuildForValidation();
+    swapMemoizedModels();
 
     timer.start();
     buildModels();
@@ -142,11 +230,31 @@ public abstract class EpoxyController {
     modelsBeingBuilt.freeze();
 
     timer.start();
-    adapter.setModels(modelsBeingBuilt);
+    adapter.setModels(modelsBeingBuilt, allowIncrementalDiff);
     timer.stop("Models diffed");
 
     modelsBeingBuilt = null;
+    clearModelPositionIndex();
     hasBuiltModelsEver = true;
+
+    buildScheduler.onBuildFinished(System.nanoTime() - startNanos);
+  }
+
+  /** Called by the adapter when models that were diffed across several frames have been set. */
+  void onIncrementalDiffFinished() {
+    if (buildRequestedDuringDiff) {
+      buildRequestedDuringDiff = false;
+      scheduleDeferredModelBuild();
+    }
+  }
+
+  /**
+   * Schedule a build that was requested while it couldn't run. This doesn't go through {@link
+   * #requestModelBuild()}, since subclasses such as {@link TypedEpoxyController} only allow that to
+   * be called while their data is being set.
+   */
+  private void scheduleDeferredModelBuild() {
+    buildScheduler.scheduleBuild(buildModelsRunnable, 0);
   }
 
   /** An estimate for how many models will be built in the next {@link #buildModels()} phase. */
@@ -170,27 +278,114 @@ public abstract class EpoxyController {
    */
   protected abstract void buildModels();
 
-  int getFirstIndexOfModelInBuildingList(EpoxyModel<?> model) {
-    int size = modelsBeingBuilt.size();
-    for (int i = 0; i < size; i++) {
-      if (modelsBeingBuilt.get(i) == model) {
-        return i;
-      }
+  /**
+   * Get a model to add in {@link #buildModels()} that is reused across builds. If a model was
+   * memoized with the same key in the previous build, and the data version is the same, then that
+   * exact model instance is returned. Otherwise the factory is called to create a new model.
+   * <p>
+   * This saves the cost of creating and setting up models whose data has not changed. Diffing is
+   * also faster, as a model is known to be unchanged if it is the same instance as the previous
+   * model with its id.
+   * <p>
+   * The returned model is not added to the controller, so it still needs to be added. Since a
+   * model may be reused across builds it must not be modified after it is created, including by
+   * interceptors. Models are only kept for one build, so a key must be used in every build for its
+   * model to continue being reused.
+   *
+   * @param key         Identifies the model across builds. This may be the model's id, and must be
+   *                    unique within a build.
+   * @param dataVersion A version of the data the model is created from, which should change
+   *                    whenever that data changes.
+   * @param factory     Creates the model when a previous model can't be reused.
+   */
+  protected <M extends EpoxyModel<?>> M memo(Object key, long dataVersion,
+      ModelFactory<M> factory) {
+    if (!isBuildingModels()) {
+      throw new IllegalEpoxyUsage("Can only call `memo` from inside `buildModels`");
+    }
+
+    MemoizedModel memoizedModel = previousMemoizedModels.get(key);
+    if (memoizedModel == null || memoizedModel.dataVersion != dataVersion) {
+      memoizedModel = new MemoizedModel(factory.createModel(), dataVersion);
+    }
+
+    if (memoizedModels.put(key, memoizedModel) != null) {
+      throw new IllegalEpoxyUsage("The memo key " + key + " was used more than once in a build");
+    }
+
+    //noinspection unchecked
+    return (M) memoizedModel.model;
+  }
+
+  /** Creates a model for {@link #memo(Object, long, ModelFactory)}. */
+  public interface ModelFactory<M extends EpoxyModel<?>> {
+    M createModel();
+  }
+
+  private static final class MemoizedModel {
+    final EpoxyModel<?> model;
+    final long dataVersion;
+
+    MemoizedModel(EpoxyModel<?> model, long dataVersion) {
+      this.model = model;
+      this.dataVersion = dataVersion;
     }
+  }
+
+  /** Models memoized in the last build are kept for the next one, and older ones are discarded. */
+  private void swapMemoizedModels() {
+    Map<Object, MemoizedModel> temp = previousMemoizedModels;
+    previousMemoizedModels = memoizedModels;
+    memoizedModels = temp;
+    memoizedModels.clear();
+  }
 
-    return -1;
+  boolean shouldValidateModelsBeingBuilt() {
+    return validateModelsBeingBuilt;
+  }
+
+  int getFirstIndexOfModelInBuildingList(EpoxyModel<?> model) {
+    updateModelPositionIndex();
+    Integer position = modelPositionsBeingBuilt.get(model);
+    return position != null ? position : -1;
   }
 
   boolean isModelAddedMultipleTimes(EpoxyModel<?> model) {
-    int modelCount = 0;
+    updateModelPositionIndex();
+    return modelsAddedMultipleTimes != null && modelsAddedMultipleTimes.contains(model);
+  }
+
+  /** Add the models that were added since the last lookup to the index of model positions. */
+  private void updateModelPositionIndex() {
+    if (modelPositionsBeingBuilt == null) {
+      modelPositionsBeingBuilt = new IdentityHashMap<>(modelsBeingBuilt.size());
+    }
+
     int size = modelsBeingBuilt.size();
-    for (int i = 0; i < size; i++) {
-      if (modelsBeingBuilt.get(i) == model) {
-        modelCount++;
+    for (int i = indexedModelCount; i < size; i++) {
+      EpoxyModel<?> model = modelsBeingBuilt.get(i);
+      if (!modelPositionsBeingBuilt.containsKey(model)) {
+        modelPositionsBeingBuilt.put(model, i);
+      } else {
+        if (modelsAddedMultipleTimes == null) {
+          modelsAddedMultipleTimes =
+              Collections.newSetFromMap(new IdentityHashMap<EpoxyModel<?>, Boolean>());
+        }
+        modelsAddedMultipleTimes.add(model);
       }
     }
 
-    return modelCount > 1;
+    indexedModelCount = size;
+  }
+
+  /**
+   * The index is only valid while models are appended, so it is cleared when the list is changed in
+   * any other way, such as by interceptors.
+   */
+  private void clearModelPositionIndex() {
+    modelPositionsBeingBuilt = null;
+    modelsAddedMultipleTimes = null;
+    indexedModelCount = 0;
   }
 
   void addAfterInterceptorCallback(ModelInterceptorCallback callback) {
@@ -228,6 +423,8 @@ public abstract class EpoxyController {
         interceptor.intercept(modelsBeingBuilt);
       }
 
+      clearModelPositionIndex();
+
       timer.stop("Interceptors executed");
 
       if (modelInterceptorCallbacks != null) {
@@ -391,43 +588,38 @@ public abstract class EpoxyController {
     }
 
     timer.start();
-    Set<Long> modelIds = new HashSet<>(models.size());
-
-    ListIterator<EpoxyModel<?>> modelIterator = models.listIterator();
-    while (modelIterator.hasNext()) {
-      EpoxyModel<?> model = modelIterator.next();
-      if (!modelIds.add(model.id())) {
-        int indexOfDuplicate = modelIterator.previousIndex();
-        modelIterator.remove();
-
-        int indexOfOriginal = findPositionOfDuplicate(models, model);
-        EpoxyModel<?> originalModel = models.get(indexOfOriginal);
-        if (indexOfDuplicate <= indexOfOriginal) {
-          // Adjust for the original positions of the models before the duplicate was removed
-          indexOfOriginal++;
-        }
-
-        onExceptionSwallowed(
-            new IllegalEpoxyUsage("Two models have the same ID. ID's must be unique!"
-                + "\nOriginal has position " + indexOfOriginal + ":\n" + originalModel
-                + "\nDuplicate has position " + indexOfDuplicate + ":\n" + model)
-        );
-      }
-    }
-
-    timer.stop("Duplicates filtered");
-  }
-
-  private int findPositionOfDuplicate(List<EpoxyModel<?>> models, EpoxyModel<?> duplicateModel) {
     int size = models.size();
+    Map<Long, Integer> positionsById = new HashMap<>(size);
+
+    // Models are compacted in a single pass, so that each model is moved at most once no matter how
+    // many duplicates there are. Positions are reported as they are in the list with previous
+    // duplicates removed.
+    int nextPosition = 0;
     for (int i = 0; i < size; i++) {
       EpoxyModel<?> model = models.get(i);
-      if (model.id() == duplicateModel.id()) {
-        return i;
+      Integer positionOfOriginal = positionsById.get(model.id());
+      if (positionOfOriginal == null) {
+        positionsById.put(model.id(), nextPosition);
+        if (nextPosition != i) {
+          models.set(nextPosition, model);
+        }
+        nextPosition++;
+        continue;
       }
+
+      onExceptionSwallowed(
+          new IllegalEpoxyUsage("Two models have the same ID. ID's must be unique!"
+              + "\nOriginal has position " + positionOfOriginal + ":\n"
+              + models.get(positionOfOriginal)
+              + "\nDuplicate has position " + nextPosition + ":\n" + model)
+      );
     }
 
-    throw new IllegalArgumentException("No duplicates in list");
+    if (nextPosition < size) {
+      models.subList(nextPosition, size).clear();
+    }
+
+    timer.stop("Duplicates filtered");
   }
 
   /**
@@ -445,6 +637,36 @@ public abstract class EpoxyController {
     this.filterDuplicates = filterDuplicates;
   }
 
+  /**
+   * Limit how long the diff of new models may run at a time, so that diffing a very large number of
+   * models doesn't block the main thread for several frames. Once the budget is used up the diff is
+   * paused and continued in the next message on the main thread, until it is done. The adapter
+   * keeps its previous models until then, and only notifies the changes once the diff is done.
+   * <p>
+   * Builds requested while a diff is in progress are run once it is done. The first build, and
+   * builds whose models must be set immediately, are always diffed in full.
+   * <p>
+   * The default is 0, which diffs new models all at once.
+   */
+  public void setDiffTimeBudgetMs(float budgetMs) {
+    if (budgetMs < 0) {
+      throw new IllegalArgumentException("Budget cannot be negative: " + budgetMs);
+    }
+
+    adapter.setDiffTimeBudgetNanos((long) (budgetMs * 1_000_000));
+  }
+
+  /**
+   * Set how to notify the changes from a model build when there are so many that animating them
+   * would be slow. By default every change is notified and animated. Set to null to restore the
+   * default.
+   *
+   * @see LargeChangePolicy
+   */
+  public void setLargeChangePolicy(@Nullable LargeChangePolicy largeChangePolicy) {
+    adapter.setLargeChangePolicy(largeChangePolicy);
+  }
+
   /**
    * If enabled, DEBUG logcat messages will be printed to show when models are rebuilt, the time
    * taken to build them, the time taken to diff them, and the item change outcomes from the
@@ -494,7 +716,51 @@ public abstract class EpoxyController {
 
     adapter.moveModel(fromPosition, toPosition);
 
-    requestDelayedModelBuild(500);
+    if (dragSessionActive) {
+      buildRequestedDuringDrag = true;
+    } else {
+      requestDelayedModelBuild(500);
+    }
+  }
+
+  /**
+   * Start a session for dragging models with {@link #moveModel(int, int)}. Until {@link
+   * #endDragSession()} is called, moved models don't request a model build, and requested builds
+   * are not run, so the models being dragged are not rebuilt while the user pauses mid drag. When
+   * the session ends a single model build is requested if any models were moved or any builds
+   * were requested.
+   * <p>
+   * This is done for you when dragging with {@link EpoxyTouchHelper} or {@link
+   * EpoxyModelTouchCallback}. Calling this while a session is already active has no effect.
+   */
+  public void startDragSession() {
+    if (isBuildingModels()) {
+      throw new IllegalEpoxyUsage("Cannot call `startDragSession` from inside `buildModels`");
+    }
+
+    dragSessionActive = true;
+  }
+
+  /**
+   * End the session started with {@link #startDragSession()}. The data backing the models should
+   * be updated for the moves before this is called. Calling this while no session is active has no
+   * effect.
+   */
+  public void endDragSession() {
+    if (!dragSessionActive) {
+      return;
+    }
+
+    dragSessionActive = false;
+    if (buildRequestedDuringDrag) {
+      buildRequestedDuringDrag = false;
+      scheduleDeferredModelBuild();
+    }
+  }
+
+  /** Whether a session started with {@link #startDragSession()} has not ended yet. */
+  public boolean isDragSessionActive() {
+    return dragSessionActive;
   }
 
   /**
@@ -575,11 +841,20 @@ public abstract class EpoxyController {
       }, DELAY_TO_CHECK_ADAPTER_COUNT_MS);
     }
 
+    // Frame budgets used for builds and validation are based on the display's refresh rate
+    FrameInterval.updateFromDisplay(recyclerView.getContext());
+    if (buildScheduler instanceof BaseModelBuildScheduler) {
+      ((BaseModelBuildScheduler) buildScheduler).onAttachedToRecyclerView(recyclerView);
+    }
+
     onAttachedToRecyclerView(recyclerView);
   }
 
   void onDetachedFromRecyclerViewInternal(RecyclerView recyclerView) {
     recyclerViewAttachCount--;
+    if (buildScheduler instanceof BaseModelBuildScheduler) {
+      ((BaseModelBuildScheduler) buildScheduler).onDetachedFromRecyclerView(recyclerView);
+    }
     onDetachedFromRecyclerView(recyclerView);
   }
 
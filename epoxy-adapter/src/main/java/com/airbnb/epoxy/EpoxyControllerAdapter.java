@@ -1,7 +1,15 @@
 package com.airbnb.epoxy;
 
+import android.os.Handler;
 import android.support.annotation.Nullable;
+import android.support.v4.view.ViewCompat;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.OrientationHelper;
 import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.RecyclerView.ItemAnimator;
+import android.support.v7.widget.RecyclerView.LayoutManager;
+import android.view.View;
+import android.view.ViewTreeObserver.OnPreDrawListener;
 
 import java.util.List;
 
@@ -12,6 +20,34 @@ public final class EpoxyControllerAdapter extends BaseEpoxyAdapter {
   private ControllerModelList currentModels = new ControllerModelList(20);
   private List<EpoxyModel<?>> copyOfCurrentModels;
   private int itemCount;
+  /**
+   * The id, view type, and span size of each model, by position. RecyclerView and GridLayoutManager
+   * look these up very frequently, so they are computed once each time models are set instead of
+   * calling into the model on every lookup.
+   */
+  private long[] ids = new long[0];
+  private int[] viewTypes = new int[0];
+  /** Null if the adapter is not multi span, or if the span sizes have been invalidated. */
+  @Nullable private int[] spanSizes;
+  /**
+   * Position of the last view type that was looked up. RecyclerView creates a view holder
+   * immediately after looking up its view type, so we use this to find the model to create the
+   * view with. See {@link ViewTypeManager#getModelForViewType(BaseEpoxyAdapter, int)}.
+   */
+  private int lastViewTypeLookupPosition = RecyclerView.NO_POSITION;
+  /** How long an incremental diff may run at a time, or 0 to always diff models immediately. */
+  private long diffTimeBudgetNanos;
+  /** Models that are being diffed incrementally and will be set once the diff is done. */
+  @Nullable private ControllerModelList pendingModels;
+  @Nullable private Handler diffHandler;
+  /** The RecyclerView this was most recently attached to, for handling large change sets. */
+  @Nullable private RecyclerView recyclerView;
+  private final Runnable continueDiffRunnable = new Runnable() {
+    @Override
+    public void run() {
+      continueDiff();
+    }
+  };
 
   EpoxyControllerAdapter(EpoxyController epoxyController) {
     this.epoxyController = epoxyController;
@@ -36,13 +72,242 @@ public final class EpoxyControllerAdapter extends BaseEpoxyAdapter {
     return itemCount;
   }
 
-  void setModels(ControllerModelList models) {
+  void setDiffTimeBudgetNanos(long budgetNanos) {
+    diffTimeBudgetNanos = budgetNanos;
+  }
+
+  /**
+   * @param allowIncrementalDiff If true, and a diff time budget is set, the models are diffed
+   *                             across several messages on the main thread. The current models are
+   *                             kept until the diff is done.
+   */
+  void setModels(ControllerModelList models, boolean allowIncrementalDiff) {
+    cancelIncrementalDiff();
+
+    // The first models are always set immediately, since there is nothing to diff them against
+    if (allowIncrementalDiff && diffTimeBudgetNanos > 0 && itemCount > 0) {
+      pendingModels = models;
+      diffHelper.startDiff(models);
+      continueDiff();
+      return;
+    }
+
+    updateCurrentModels(models);
+    notifyBlocker.allowChanges();
+    int handling = diffHelper.notifyModelChanges();
+    notifyBlocker.blockChanges();
+    onChangesNotified(handling);
+  }
+
+  private void updateCurrentModels(ControllerModelList models) {
     itemCount = models.size();
     copyOfCurrentModels = null;
     this.currentModels = models;
+    updateModelArrays();
+  }
+
+  boolean isDiffInProgress() {
+    return pendingModels != null;
+  }
+
+  private void continueDiff() {
+    if (!diffHelper.continueDiff(System.nanoTime() + diffTimeBudgetNanos)) {
+      if (diffHandler == null) {
+        diffHandler = new Handler();
+      }
+      diffHandler.post(continueDiffRunnable);
+      return;
+    }
+
+    ControllerModelList models = pendingModels;
+    pendingModels = null;
+    updateCurrentModels(models);
     notifyBlocker.allowChanges();
-    diffHelper.notifyModelChanges();
+    int handling = diffHelper.dispatchDiff();
     notifyBlocker.blockChanges();
+    onChangesNotified(handling);
+
+    epoxyController.onIncrementalDiffFinished();
+  }
+
+  void setLargeChangePolicy(@Nullable LargeChangePolicy largeChangePolicy) {
+    diffHelper.setLargeChangePolicy(largeChangePolicy);
+  }
+
+  private void onChangesNotified(@LargeChangePolicy.Handling int handling) {
+    if (recyclerView == null || handling == LargeChangePolicy.NOTIFY_CHANGES) {
+      return;
+    }
+
+    if (handling == LargeChangePolicy.REFRESH) {
+      keepScrollAnchor(recyclerView);
+    }
+
+    disableAnimationsUntilNextLayout(recyclerView);
+  }
+
+  /**
+   * Scroll to keep the first visible item that still exists at the same offset. The views have not
+   * been laid out for the new models yet, so their positions, item ids, and offsets are from before
+   * the refresh. The offset is measured from the edge the layout starts at, which is the end edge
+   * when the layout is reversed.
+   */
+  private void keepScrollAnchor(RecyclerView recyclerView) {
+    LayoutManager layoutManager = recyclerView.getLayoutManager();
+    if (!(layoutManager instanceof LinearLayoutManager)) {
+      return;
+    }
+
+    LinearLayoutManager linearLayoutManager = (LinearLayoutManager) layoutManager;
+    int firstVisiblePosition = linearLayoutManager.findFirstVisibleItemPosition();
+    int lastVisiblePosition = linearLayoutManager.findLastVisibleItemPosition();
+    if (firstVisiblePosition == RecyclerView.NO_POSITION) {
+      return;
+    }
+
+    OrientationHelper orientationHelper = OrientationHelper
+        .createOrientationHelper(linearLayoutManager, linearLayoutManager.getOrientation());
+    boolean layoutFromEnd = isLayoutReversed(recyclerView, linearLayoutManager);
+
+    for (int oldPosition = firstVisiblePosition; oldPosition <= lastVisiblePosition;
+        oldPosition++) {
+      View child = linearLayoutManager.findViewByPosition(oldPosition);
+      if (child == null) {
+        continue;
+      }
+
+      int position = diffHelper.getPositionForId(recyclerView.getChildItemId(child));
+      if (position == RecyclerView.NO_POSITION) {
+        continue;
+      }
+
+      int offset = layoutFromEnd
+          ? orientationHelper.getEndAfterPadding() - orientationHelper.getDecoratedEnd(child)
+          : orientationHelper.getDecoratedStart(child) - orientationHelper.getStartAfterPadding();
+      linearLayoutManager.scrollToPositionWithOffset(position, offset);
+      return;
+    }
+  }
+
+  /**
+   * Whether items are laid out from the end edge, which LinearLayoutManager also does for
+   * horizontal layouts in right to left layout direction unless reverse layout is set.
+   */
+  private static boolean isLayoutReversed(RecyclerView recyclerView,
+      LinearLayoutManager layoutManager) {
+    boolean reversed = layoutManager.getReverseLayout();
+    if (layoutManager.getOrientation() == LinearLayoutManager.HORIZONTAL
+        && ViewCompat.getLayoutDirection(recyclerView) == ViewCompat.LAYOUT_DIRECTION_RTL) {
+      return !reversed;
+    }
+    return reversed;
+  }
+
+  /**
+   * The item animator is only used when the RecyclerView lays out the changes, so it is removed
+   * until then and restored before the next draw.
+   */
+  private static void disableAnimationsUntilNextLayout(final RecyclerView recyclerView) {
+    final ItemAnimator itemAnimator = recyclerView.getItemAnimator();
+    if (itemAnimator == null) {
+      // Either there is no animator, or it is already disabled for this layout
+      return;
+    }
+
+    recyclerView.setItemAnimator(null);
+    recyclerView.getViewTreeObserver().addOnPreDrawListener(new OnPreDrawListener() {
+      @Override
+      public boolean onPreDraw() {
+        recyclerView.getViewTreeObserver().removeOnPreDrawListener(this);
+        if (recyclerView.getItemAnimator() == null) {
+          recyclerView.setItemAnimator(itemAnimator);
+        }
+        return true;
+      }
+    });
+  }
+
+  private void cancelIncrementalDiff() {
+    if (pendingModels == null) {
+      return;
+    }
+
+    pendingModels = null;
+    diffHelper.cancelDiff();
+    if (diffHandler != null) {
+      diffHandler.removeCallbacks(continueDiffRunnable);
+    }
+  }
+
+  private void updateModelArrays() {
+    if (ids.length != itemCount) {
+      ids = new long[itemCount];
+      viewTypes = new int[itemCount];
+    }
+
+    for (int i = 0; i < itemCount; i++) {
+      EpoxyModel<?> model = currentModels.get(i);
+      ids[i] = model.id();
+      viewTypes[i] = ViewTypeManager.getViewTypeInternal(model);
+    }
+
+    updateSpanSizes();
+  }
+
+  private void updateSpanSizes() {
+    if (!isMultiSpan()) {
+      spanSizes = null;
+      return;
+    }
+
+    if (spanSizes == null || spanSizes.length != itemCount) {
+      spanSizes = new int[itemCount];
+    }
+
+    for (int i = 0; i < itemCount; i++) {
+      spanSizes[i] = super.getSpanSizeForPosition(i);
+    }
+  }
+
+  @Override
+  public long getItemId(int position) {
+    return ids[position];
+  }
+
+  @Override
+  public int getItemViewType(int position) {
+    lastViewTypeLookupPosition = position;
+    return viewTypes[position];
+  }
+
+  @Override
+  EpoxyModel<?> getModelForViewType(int viewType) {
+    int position = lastViewTypeLookupPosition;
+    if (position >= 0 && position < itemCount && viewTypes[position] == viewType) {
+      return currentModels.get(position);
+    }
+
+    return super.getModelForViewType(viewType);
+  }
+
+  @Override
+  int getSpanSizeForPosition(int position) {
+    if (spanSizes != null) {
+      return spanSizes[position];
+    }
+
+    return super.getSpanSizeForPosition(position);
+  }
+
+  @Override
+  public void setSpanCount(int spanCount) {
+    super.setSpanCount(spanCount);
+    updateSpanSizes();
+  }
+
+  @Override
+  boolean isModelRemoved(long modelId) {
+    return !diffHelper.hasModelWithId(modelId);
   }
 
   @Override
@@ -52,11 +317,15 @@ public final class EpoxyControllerAdapter extends BaseEpoxyAdapter {
 
   @Override
   public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+    this.recyclerView = recyclerView;
     epoxyController.onAttachedToRecyclerViewInternal(recyclerView);
   }
 
   @Override
   public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+    if (this.recyclerView == recyclerView) {
+      this.recyclerView = null;
+    }
     epoxyController.onDetachedFromRecyclerViewInternal(recyclerView);
   }
 
@@ -97,31 +366,33 @@ public final class EpoxyControllerAdapter extends BaseEpoxyAdapter {
   }
 
   /**
-   * Searches the current model list for the model with the given id. Returns the matching model if
-   * one is found, otherwise null is returned.
+   * Looks up the model with the given id in the current models. Returns the matching model if one
+   * is found, otherwise null is returned.
    */
   @Nullable
   public EpoxyModel<?> getModelById(long id) {
-    for (EpoxyModel<?> model : currentModels) {
-      if (model.id() == id) {
-        return model;
-      }
-    }
-
-    return null;
+    int position = diffHelper.getPositionForId(id);
+    return position != RecyclerView.NO_POSITION ? currentModels.get(position) : null;
   }
 
   @Override
   public int getModelPosition(EpoxyModel<?> targetModel) {
-    int size = currentModels.size();
-    for (int i = 0; i < size; i++) {
-      EpoxyModel<?> model = currentModels.get(i);
-      if (model.id() == targetModel.id()) {
-        return i;
-      }
-    }
+    return diffHelper.getPositionForId(targetModel.id());
+  }
 
-    return -1;
+  /**
+   * Find the current position of the model with each of the given ids. This is more efficient than
+   * looking up each model individually when many positions are needed at once.
+   *
+   * @return An array with the position of the model for the id at the same index in the given
+   * array, or {@link RecyclerView#NO_POSITION} if no current model has that id.
+   */
+  public int[] findPositionsForIds(long[] ids) {
+    int[] positions = new int[ids.length];
+    for (int i = 0; i < ids.length; i++) {
+      positions[i] = diffHelper.getPositionForId(ids[i]);
+    }
+    return positions;
   }
 
   @Override
@@ -130,14 +401,41 @@ public final class EpoxyControllerAdapter extends BaseEpoxyAdapter {
   }
 
   void moveModel(int fromPosition, int toPosition) {
+    // The diff was started from the models before the move. The controller requests a new build
+    // after a move anyway, so the diff can be discarded.
+    cancelIncrementalDiff();
     copyOfCurrentModels = null;
 
     currentModels.pauseNotifications();
     currentModels.add(toPosition, currentModels.remove(fromPosition));
     currentModels.resumeNotifications();
+    moveModelArrays(fromPosition, toPosition);
 
     notifyBlocker.allowChanges();
     notifyItemMoved(fromPosition, toPosition);
     notifyBlocker.blockChanges();
   }
+
+  private void moveModelArrays(int fromPosition, int toPosition) {
+    long movedId = ids[fromPosition];
+    int movedViewType = viewTypes[fromPosition];
+
+    if (fromPosition < toPosition) {
+      System.arraycopy(ids, fromPosition + 1, ids, fromPosition, toPosition - fromPosition);
+      System.arraycopy(viewTypes, fromPosition + 1, viewTypes, fromPosition,
+          toPosition - fromPosition);
+    } else {
+      System.arraycopy(ids, toPosition, ids, toPosition + 1, fromPosition - toPosition);
+      System.arraycopy(viewTypes, toPosition, viewTypes, toPosition + 1,
+          fromPosition - toPosition);
+    }
+
+    ids[toPosition] = movedId;
+    viewTypes[toPosition] = movedViewType;
+
+    // Span sizes may depend on position, so they are looked up from the models until the next
+    // time models are set.
+    spanSizes = null;
+    lastViewTypeLookupPosition = RecyclerView.NO_POSITION;
+  }
 }
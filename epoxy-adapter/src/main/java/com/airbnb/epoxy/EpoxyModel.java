@@ -361,6 +361,11 @@ public abstract class EpoxyModel<T> {
       throw new IllegalArgumentException("Controller cannot be null");
     }
 
+    if (!controller.shouldValidateModelsBeingBuilt()) {
+      // Validation is sampled, and this build was not chosen. See Epoxy#setValidationSampleRate
+      return;
+    }
+
     if (controller.isModelAddedMultipleTimes(this)) {
       throw new IllegalEpoxyUsage(
           "This model was already added to the controller at position "
@@ -412,8 +417,8 @@ public abstract class EpoxyModel<T> {
     // and added to an adapter in one controller we don't want to even allow interceptors
     // from changing the model in a different controller
     if (isDebugValidationEnabled() && !currentlyInInterceptors) {
-      throw new ImmutableModelException(this,
-          getPosition(firstControllerAddedTo, this));
+      onValidationFailed(new ImmutableModelException(this,
+          getPosition(firstControllerAddedTo, this)));
     }
 
     if (controllerToStageTo != null) {
@@ -443,10 +448,28 @@ public abstract class EpoxyModel<T> {
    */
   protected final void validateStateHasNotChangedSinceAdded(String descriptionOfChange,
       int modelPosition) {
-    if (isDebugValidationEnabled()
-        && !currentlyInInterceptors
-        && hashCodeWhenAdded != hashCode()) {
-      throw new ImmutableModelException(this, descriptionOfChange, modelPosition);
+    if (!isDebugValidationEnabled()
+        || currentlyInInterceptors
+        || !Epoxy.hasValidationTimeRemaining()) {
+      return;
+    }
+
+    long startNanos = System.nanoTime();
+    int currentHashCode = hashCode();
+    Epoxy.recordValidationTime(startNanos);
+
+    if (hashCodeWhenAdded != currentHashCode) {
+      onValidationFailed(new ImmutableModelException(this, descriptionOfChange, modelPosition));
+      // The exception was swallowed so the change is accepted, and only reported once
+      hashCodeWhenAdded = currentHashCode;
+    }
+  }
+
+  private void onValidationFailed(ImmutableModelException exception) {
+    if (Epoxy.shouldSwallowValidationExceptions()) {
+      firstControllerAddedTo.onExceptionSwallowed(exception);
+    } else {
+      throw exception;
     }
   }
 
@@ -25,6 +25,8 @@ public abstract class EpoxyModelTouchCallback<T extends EpoxyModel>
   private final Class<T> targetModelClass;
   private EpoxyViewHolder holderBeingDragged;
   private EpoxyViewHolder holderBeingSwiped;
+  /** Whether this callback started a drag session on the controller that hasn't ended yet. */
+  private boolean dragSessionStarted;
 
   public EpoxyModelTouchCallback(@Nullable EpoxyController controller, Class<T> targetModelClass) {
     this.controller = controller;
@@ -130,6 +132,7 @@ public abstract class EpoxyModelTouchCallback<T extends EpoxyModel>
         onSwipeStarted((T) model, viewHolder.itemView, viewHolder.getAdapterPosition());
       } else if (actionState == ItemTouchHelper.ACTION_STATE_DRAG) {
         holderBeingDragged = viewHolder;
+        startDragSession();
         //noinspection unchecked
         onDragStarted((T) model, viewHolder.itemView, viewHolder.getAdapterPosition());
       }
@@ -137,6 +140,8 @@ public abstract class EpoxyModelTouchCallback<T extends EpoxyModel>
       //noinspection unchecked
       onDragReleased((T) holderBeingDragged.getModel(), holderBeingDragged.itemView);
       holderBeingDragged = null;
+      // Data should be updated for the moves by now, so models can be rebuilt
+      endDragSession();
     } else if (holderBeingSwiped != null) {
       //noinspection unchecked
       onSwipeReleased((T) holderBeingSwiped.getModel(), holderBeingSwiped.itemView);
@@ -144,6 +149,24 @@ public abstract class EpoxyModelTouchCallback<T extends EpoxyModel>
     }
   }
 
+  /**
+   * Models are not rebuilt while dragging, so that each move doesn't schedule a rebuild. They are
+   * rebuilt once when the drag is released.
+   */
+  private void startDragSession() {
+    if (controller != null && !dragSessionStarted) {
+      dragSessionStarted = true;
+      controller.startDragSession();
+    }
+  }
+
+  private void endDragSession() {
+    if (controller != null && dragSessionStarted) {
+      dragSessionStarted = false;
+      controller.endDragSession();
+    }
+  }
+
   private void markRecyclerViewHasSelection(RecyclerView recyclerView) {
     recyclerView.setTag(R.id.epoxy_touch_helper_selection_status, Boolean.TRUE);
   }
@@ -181,6 +204,8 @@ public abstract class EpoxyModelTouchCallback<T extends EpoxyModel>
     super.clearView(recyclerView, viewHolder);
     //noinspection unchecked
     clearView((T) viewHolder.getModel(), viewHolder.itemView);
+    // The session normally ends when the drag is released, but this makes sure it isn't left open
+    endDragSession();
 
     // If multiple touch helpers are in use, one touch helper can pick up buffered touch inputs
     // immediately after another touch event finishes. This leads to things like a view being
@@ -0,0 +1,45 @@
+package com.airbnb.epoxy;
+
+import android.content.Context;
+import android.support.annotation.MainThread;
+import android.view.Display;
+import android.view.WindowManager;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks how long a frame lasts on the display, so that work that is budgeted per frame adapts to
+ * displays that refresh faster or slower than 60Hz. The interval is read from the refresh rate of
+ * the default display each time a controller is attached to a RecyclerView, and is 60Hz until
+ * then.
+ */
+final class FrameInterval {
+  private static final long DEFAULT_FRAME_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+
+  private static long frameIntervalNanos = DEFAULT_FRAME_INTERVAL_NANOS;
+
+  private FrameInterval() {
+  }
+
+  /** The time between frames on the display, in nanoseconds. */
+  static long getNanos() {
+    return frameIntervalNanos;
+  }
+
+  /** Read the frame interval from the refresh rate of the default display. */
+  @MainThread
+  static void updateFromDisplay(Context context) {
+    WindowManager windowManager =
+        (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+    if (windowManager == null) {
+      return;
+    }
+
+    Display display = windowManager.getDefaultDisplay();
+    float refreshRate = display != null ? display.getRefreshRate() : 0;
+    // Some devices report nonsensical rates, in which case the previous interval is kept
+    if (refreshRate >= 10 && refreshRate <= 1000) {
+      frameIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / refreshRate);
+    }
+  }
+}
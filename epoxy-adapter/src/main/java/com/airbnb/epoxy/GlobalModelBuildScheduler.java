@@ -0,0 +1,401 @@
+package com.airbnb.epoxy;
+
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue.IdleHandler;
+import android.support.annotation.MainThread;
+import android.support.annotation.Nullable;
+import android.support.annotation.RequiresApi;
+import android.support.annotation.VisibleForTesting;
+import android.support.v7.widget.RecyclerView;
+import android.view.Choreographer;
+import android.view.Choreographer.FrameCallback;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.view.ViewTreeObserver.OnPreDrawListener;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinates model builds across all controllers in the process that use it, so that controllers
+ * which are not on screen don't compete with the visible ones for main thread time. For example,
+ * when several tabs of a ViewPager each have a controller and they all request a build for the
+ * same data change.
+ * <p>
+ * Register a controller by setting a scheduler from {@link #newScheduler()} on it, with {@link
+ * EpoxyController#setModelBuildScheduler(ModelBuildScheduler)}. Pending builds are then run as
+ * follows:
+ * <ul>
+ * <li>Builds for controllers whose RecyclerView is visible on screen are run in the next frame, in
+ * the order they were requested. Once the frame's time budget is used up, the remaining builds
+ * wait for the next frame. At least one build is run each frame so that progress is always
+ * made.</li>
+ * <li>Builds for controllers that are not attached to a RecyclerView, or whose RecyclerView is not
+ * visible, are deferred until the main thread is idle. They share the same time budget, so idle
+ * builds wait for the next frame once the budget for the current frame is used up. If the
+ * RecyclerView is drawn on screen before then the build is run with the visible builds.</li>
+ * </ul>
+ * A frame callback is only posted while a visible controller has a build ready to run, so nothing
+ * is done on frames where there is no work.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+@RequiresApi(Build.VERSION_CODES.JELLY_BEAN)
+public final class GlobalModelBuildScheduler {
+  private static final float DEFAULT_FRAME_BUDGET_MS = 8;
+
+  private static GlobalModelBuildScheduler instance;
+
+  private final Choreographer choreographer = Choreographer.getInstance();
+  private final Handler handler = new Handler(Looper.getMainLooper());
+  /** Schedulers that have a pending build, in the order the builds were requested. */
+  private final List<ControllerScheduler> pendingSchedulers = new ArrayList<>();
+  private final Rect visibleRect = new Rect();
+  private long frameBudgetNanos = toNanos(DEFAULT_FRAME_BUDGET_MS);
+  /** The time that the current frame's budget started, and how much of the budget is used. */
+  private long budgetStartNanos;
+  private long budgetUsedNanos;
+  private boolean frameCallbackPosted;
+  private boolean wakeUpPosted;
+  private boolean idleHandlerAdded;
+  private boolean runningIdleHandler;
+
+  private final FrameCallback frameCallback = new FrameCallback() {
+    @Override
+    public void doFrame(long frameTimeNanos) {
+      frameCallbackPosted = false;
+      // The frame time is not used since the budget is measured with System.nanoTime
+      budgetStartNanos = System.nanoTime();
+      budgetUsedNanos = 0;
+
+      runVisibleBuilds();
+      updateSchedule();
+    }
+  };
+
+  private final IdleHandler idleHandler = new IdleHandler() {
+    @Override
+    public boolean queueIdle() {
+      runningIdleHandler = true;
+      if (hasBudgetRemaining()) {
+        ControllerScheduler scheduler = getNextReadyScheduler(false);
+        if (scheduler != null) {
+          runBuild(scheduler);
+        }
+      }
+
+      updateSchedule();
+      runningIdleHandler = false;
+      // Returning whether the handler is still needed is how it is removed from inside the handler
+      return idleHandlerAdded;
+    }
+  };
+
+  /** Reschedules once a delayed build is ready or once the next frame's budget is available. */
+  private final Runnable wakeUp = new Runnable() {
+    @Override
+    public void run() {
+      wakeUpPosted = false;
+      updateSchedule();
+    }
+  };
+
+  @VisibleForTesting
+  GlobalModelBuildScheduler() {
+  }
+
+  @MainThread
+  public static GlobalModelBuildScheduler getInstance() {
+    if (instance == null) {
+      instance = new GlobalModelBuildScheduler();
+    }
+    return instance;
+  }
+
+  /**
+   * Set how much time may be spent building models in each frame, across all controllers. The
+   * default is 8ms.
+   */
+  @MainThread
+  public void setFrameBudgetMs(float budgetMs) {
+    if (budgetMs < 0) {
+      throw new IllegalArgumentException("Budget cannot be negative: " + budgetMs);
+    }
+
+    frameBudgetNanos = toNanos(budgetMs);
+  }
+
+  /**
+   * Create a scheduler for a controller to use. Each controller must have its own scheduler.
+   *
+   * @see EpoxyController#setModelBuildScheduler(ModelBuildScheduler)
+   */
+  @MainThread
+  public ModelBuildScheduler newScheduler() {
+    return new ControllerScheduler();
+  }
+
+  private void runVisibleBuilds() {
+    boolean ranBuild = false;
+
+    while (!ranBuild || hasBudgetRemaining()) {
+      // Builds may request or cancel other builds, so the next one is looked up each time
+      ControllerScheduler scheduler = getNextReadyScheduler(true);
+      if (scheduler == null) {
+        return;
+      }
+
+      runBuild(scheduler);
+      ranBuild = true;
+    }
+  }
+
+  private void runBuild(ControllerScheduler scheduler) {
+    long startNanos = System.nanoTime();
+    scheduler.runBuild();
+    budgetUsedNanos += System.nanoTime() - startNanos;
+  }
+
+  private boolean hasBudgetRemaining() {
+    long now = System.nanoTime();
+    if (now - budgetStartNanos >= FrameInterval.getNanos()) {
+      // A frame has passed without a frame callback, so a new budget starts now
+      budgetStartNanos = now;
+      budgetUsedNanos = 0;
+    }
+
+    return budgetUsedNanos < frameBudgetNanos;
+  }
+
+  @Nullable
+  private ControllerScheduler getNextReadyScheduler(boolean visibleOnly) {
+    long now = System.nanoTime();
+    for (ControllerScheduler scheduler : pendingSchedulers) {
+      if (scheduler.earliestBuildTimeNanos <= now
+          && (!visibleOnly || isVisible(scheduler.getRecyclerView()))) {
+        return scheduler;
+      }
+    }
+
+    return null;
+  }
+
+  private boolean isVisible(@Nullable RecyclerView recyclerView) {
+    return recyclerView != null
+        && recyclerView.isShown()
+        && recyclerView.getWindowVisibility() == View.VISIBLE
+        && recyclerView.getGlobalVisibleRect(visibleRect);
+  }
+
+  /**
+   * Decide how each pending build will next be run. Visible builds get a frame callback, posted
+   * for when the earliest of them is ready. Hidden builds are run by the idle handler, and their
+   * RecyclerViews are watched so they can be moved to a frame callback once they are drawn on
+   * screen. A wake up is posted for when a hidden build's delay ends, or for when the next frame's
+   * budget starts if the current one is used up, since the idle handler is only called when the
+   * main thread becomes idle.
+   */
+  private void updateSchedule() {
+    long now = System.nanoTime();
+    long nextVisibleBuildNanos = Long.MAX_VALUE;
+    long nextHiddenBuildNanos = Long.MAX_VALUE;
+
+    for (ControllerScheduler scheduler : pendingSchedulers) {
+      boolean visible = isVisible(scheduler.getRecyclerView());
+      scheduler.setWatchingVisibility(!visible);
+
+      if (visible) {
+        nextVisibleBuildNanos = Math.min(nextVisibleBuildNanos, scheduler.earliestBuildTimeNanos);
+      } else {
+        nextHiddenBuildNanos = Math.min(nextHiddenBuildNanos, scheduler.earliestBuildTimeNanos);
+      }
+    }
+
+    if (nextVisibleBuildNanos != Long.MAX_VALUE) {
+      postFrameCallback(nextVisibleBuildNanos - now);
+    } else if (frameCallbackPosted) {
+      choreographer.removeFrameCallback(frameCallback);
+      frameCallbackPosted = false;
+    }
+
+    boolean hiddenBuildReady = nextHiddenBuildNanos <= now;
+    boolean idleBuildAllowed = hiddenBuildReady && hasBudgetRemaining();
+    setIdleHandlerAdded(idleBuildAllowed);
+
+    if (hiddenBuildReady && !idleBuildAllowed) {
+      postWakeUp(budgetStartNanos + FrameInterval.getNanos() - now);
+    } else if (nextHiddenBuildNanos != Long.MAX_VALUE && !hiddenBuildReady) {
+      postWakeUp(nextHiddenBuildNanos - now);
+    } else if (wakeUpPosted) {
+      handler.removeCallbacks(wakeUp);
+      wakeUpPosted = false;
+    }
+  }
+
+  private void postFrameCallback(long delayNanos) {
+    if (frameCallbackPosted) {
+      choreographer.removeFrameCallback(frameCallback);
+    }
+
+    long delayMs = TimeUnit.NANOSECONDS.toMillis(delayNanos);
+    if (delayMs > 0) {
+      choreographer.postFrameCallbackDelayed(frameCallback, delayMs);
+    } else {
+      choreographer.postFrameCallback(frameCallback);
+    }
+    frameCallbackPosted = true;
+  }
+
+  private void postWakeUp(long delayNanos) {
+    handler.removeCallbacks(wakeUp);
+    // Rounded up so the wake up doesn't happen just before the delay ends
+    handler.postDelayed(wakeUp, Math.max(0, TimeUnit.NANOSECONDS.toMillis(delayNanos) + 1));
+    wakeUpPosted = true;
+  }
+
+  private void setIdleHandlerAdded(boolean added) {
+    if (idleHandlerAdded == added) {
+      return;
+    }
+
+    idleHandlerAdded = added;
+    if (runningIdleHandler) {
+      // The idle handler's return value adds or removes it once it finishes
+      return;
+    }
+
+    if (added) {
+      Looper.myQueue().addIdleHandler(idleHandler);
+    } else {
+      Looper.myQueue().removeIdleHandler(idleHandler);
+    }
+  }
+
+  /** Run the idle handler as if the main thread became idle. */
+  @VisibleForTesting
+  void dispatchIdle() {
+    boolean keep = idleHandler.queueIdle();
+    Looper.myQueue().removeIdleHandler(idleHandler);
+    if (keep) {
+      Looper.myQueue().addIdleHandler(idleHandler);
+    }
+  }
+
+  private static long toNanos(float ms) {
+    return (long) (ms * TimeUnit.MILLISECONDS.toNanos(1));
+  }
+
+  private final class ControllerScheduler extends BaseModelBuildScheduler {
+    @Nullable private Runnable pendingBuild;
+    private long earliestBuildTimeNanos;
+    /**
+     * A weak reference is used since a controller may outlive its view without its adapter being
+     * detached from the RecyclerView.
+     */
+    @Nullable private WeakReference<RecyclerView> recyclerViewReference;
+    /** The observer that the visibility listener was added to, if it is added. */
+    @Nullable private ViewTreeObserver watchedObserver;
+
+    private final OnPreDrawListener visibilityListener = new OnPreDrawListener() {
+      @Override
+      public boolean onPreDraw() {
+        if (isVisible(getRecyclerView())) {
+          updateSchedule();
+        }
+        return true;
+      }
+    };
+
+    @Override
+    public void scheduleBuild(Runnable buildRunnable, int delayMs) {
+      if (pendingBuild == null) {
+        pendingSchedulers.add(this);
+      }
+
+      pendingBuild = buildRunnable;
+      earliestBuildTimeNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+      updateSchedule();
+    }
+
+    @Override
+    public void cancelBuild(Runnable buildRunnable) {
+      if (pendingBuild == buildRunnable) {
+        clearPendingBuild();
+        updateSchedule();
+      }
+    }
+
+    void runBuild() {
+      Runnable build = pendingBuild;
+      clearPendingBuild();
+      if (build != null) {
+        build.run();
+      }
+    }
+
+    private void clearPendingBuild() {
+      pendingBuild = null;
+      pendingSchedulers.remove(this);
+      setWatchingVisibility(false);
+    }
+
+    @Nullable
+    RecyclerView getRecyclerView() {
+      return recyclerViewReference != null ? recyclerViewReference.get() : null;
+    }
+
+    /**
+     * Watch whether the RecyclerView is drawn on screen, so that a hidden build is run in a frame
+     * callback as soon as the RecyclerView becomes visible instead of waiting for the main thread
+     * to be idle.
+     */
+    void setWatchingVisibility(boolean watch) {
+      RecyclerView recyclerView = getRecyclerView();
+      ViewTreeObserver observer =
+          watch && recyclerView != null ? recyclerView.getViewTreeObserver() : null;
+      if (observer == watchedObserver) {
+        return;
+      }
+
+      // A detached view's observer is merged into the window's observer when the view is attached,
+      // so the listener may have moved from the observer that it was added to
+      removeVisibilityListener(watchedObserver);
+      if (recyclerView != null) {
+        removeVisibilityListener(recyclerView.getViewTreeObserver());
+      }
+
+      watchedObserver = observer;
+      if (observer != null) {
+        observer.addOnPreDrawListener(visibilityListener);
+      }
+    }
+
+    private void removeVisibilityListener(@Nullable ViewTreeObserver observer) {
+      if (observer != null && observer.isAlive()) {
+        observer.removeOnPreDrawListener(visibilityListener);
+      }
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+      setWatchingVisibility(false);
+      recyclerViewReference = new WeakReference<>(recyclerView);
+      if (pendingBuild != null) {
+        updateSchedule();
+      }
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+      if (getRecyclerView() == recyclerView) {
+        setWatchingVisibility(false);
+        recyclerViewReference = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,27 @@
+package com.airbnb.epoxy;
+
+import android.os.Handler;
+
+/**
+ * The default {@link ModelBuildScheduler}. Builds are posted to the main thread, and each request
+ * replaces any build that is already pending so that a burst of requests is debounced.
+ */
+public class HandlerModelBuildScheduler implements ModelBuildScheduler {
+  private final Handler handler = new Handler();
+
+  @Override
+  public void scheduleBuild(Runnable buildRunnable, int delayMs) {
+    handler.removeCallbacks(buildRunnable);
+    handler.postDelayed(buildRunnable, delayMs);
+  }
+
+  @Override
+  public void cancelBuild(Runnable buildRunnable) {
+    handler.removeCallbacks(buildRunnable);
+  }
+
+  @Override
+  public void onBuildFinished(long durationNanos) {
+
+  }
+}
@@ -0,0 +1,93 @@
+package com.airbnb.epoxy;
+
+import android.support.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * Decides how the changes from a model build are notified when there are so many of them that
+ * animating each one would be slow, such as when a filter replaces most of a list. Set this with
+ * {@link EpoxyController#setLargeChangePolicy(LargeChangePolicy)}.
+ * <p>
+ * A change set is large if it exceeds any of the limits set here. Large change sets are handled
+ * with the handling given to the constructor, and all others are notified normally. By default
+ * there are no limits, so subclasses may instead override {@link #getHandling(int, int, float)} to
+ * decide some other way.
+ */
+public class LargeChangePolicy {
+
+  @IntDef({NOTIFY_CHANGES, NOTIFY_CHANGES_WITHOUT_ANIMATIONS, REFRESH})
+  @Retention(RetentionPolicy.SOURCE)
+  public @interface Handling {
+  }
+
+  /** Each insertion, removal, move, and change is notified and animated by the RecyclerView. */
+  public static final int NOTIFY_CHANGES = 0;
+  /**
+   * Each change is notified, but the RecyclerView's item animator is disabled until its next
+   * layout, so the changes are applied without animating.
+   */
+  public static final int NOTIFY_CHANGES_WITHOUT_ANIMATIONS = 1;
+  /**
+   * A single data set change is notified instead of each change, and nothing is animated. If the
+   * RecyclerView uses a {@link android.support.v7.widget.LinearLayoutManager}, the first visible
+   * item that still exists is kept at the same scroll offset, by its id.
+   */
+  public static final int REFRESH = 2;
+
+  @Handling private final int largeChangeHandling;
+  private int maxOperations = Integer.MAX_VALUE;
+  private int maxMoves = Integer.MAX_VALUE;
+  private float maxChangedFraction = 1;
+
+  /** @param largeChangeHandling How to notify change sets that exceed the limits set here. */
+  public LargeChangePolicy(@Handling int largeChangeHandling) {
+    this.largeChangeHandling = largeChangeHandling;
+  }
+
+  /**
+   * Treat the changes as large if more than this many operations are needed to notify them. Each
+   * batch of adjacent insertions, removals, or changes is one operation, and each move is one
+   * operation.
+   */
+  public LargeChangePolicy maxOperations(int maxOperations) {
+    this.maxOperations = maxOperations;
+    return this;
+  }
+
+  /** Treat the changes as large if more than this many items were moved. */
+  public LargeChangePolicy maxMoves(int maxMoves) {
+    this.maxMoves = maxMoves;
+    return this;
+  }
+
+  /**
+   * Treat the changes as large if more than this fraction of items were inserted, removed, moved,
+   * or changed, out of the larger of the previous and new item counts. This should be between 0
+   * and 1.
+   */
+  public LargeChangePolicy maxChangedFraction(float maxChangedFraction) {
+    this.maxChangedFraction = maxChangedFraction;
+    return this;
+  }
+
+  /**
+   * Decide how to notify a change set. This is called on the main thread once the changes are
+   * known, before any of them are notified.
+   *
+   * @param operationCount  The number of operations needed to notify the changes.
+   * @param moveCount       The number of items that were moved.
+   * @param changedFraction The fraction of items that were not kept unchanged in place.
+   */
+  @Handling
+  public int getHandling(int operationCount, int moveCount, float changedFraction) {
+    if (operationCount > maxOperations
+        || moveCount > maxMoves
+        || changedFraction > maxChangedFraction) {
+      return largeChangeHandling;
+    }
+
+    return NOTIFY_CHANGES;
+  }
+}
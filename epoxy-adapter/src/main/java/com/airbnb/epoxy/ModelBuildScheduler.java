@@ -0,0 +1,36 @@
+package com.airbnb.epoxy;
+
+/**
+ * Decides when a model build that has been requested on an {@link EpoxyController} is run. Set a
+ * custom scheduler with {@link EpoxyController#setModelBuildScheduler(ModelBuildScheduler)}.
+ * <p>
+ * Each controller calls its scheduler from the main thread, and a scheduler instance should not be
+ * shared between controllers since it tracks the controller's pending build.
+ * <p>
+ * Extend {@link BaseModelBuildScheduler} instead to also be told which RecyclerView the
+ * controller's adapter is attached to.
+ *
+ * @see HandlerModelBuildScheduler
+ * @see ChoreographerModelBuildScheduler
+ */
+public interface ModelBuildScheduler {
+
+  /**
+   * Schedule the runnable to be run on the main thread to build models. Any build that is already
+   * scheduled has been requested with older data, so it may either be replaced by this request or
+   * be kept as long as it is run no earlier than the given delay.
+   *
+   * @param delayMs The minimum time to wait before building models, as requested by {@link
+   *                EpoxyController#requestDelayedModelBuild(int)}.
+   */
+  void scheduleBuild(Runnable buildRunnable, int delayMs);
+
+  /** Cancel the build if it is scheduled and has not been run yet. */
+  void cancelBuild(Runnable buildRunnable);
+
+  /**
+   * Called after each model build finishes, including builds that were not scheduled by this
+   * scheduler, with the time it took to build and diff the models.
+   */
+  void onBuildFinished(long durationNanos);
+}
@@ -25,6 +25,15 @@ class ModelState {
   int lastMoveOp;
 
   static ModelState build(EpoxyModel<?> model, int position, boolean immutableModel) {
+    return build(model, position, immutableModel, immutableModel ? 0 : model.hashCode());
+  }
+
+  /**
+   * @param hashCode The model's hashCode, if it was already computed. This is only used if the
+   *                 model is not immutable.
+   */
+  static ModelState build(EpoxyModel<?> model, int position, boolean immutableModel,
+      int hashCode) {
     ModelState state = new ModelState();
 
     state.lastMoveOp = 0;
@@ -35,12 +44,27 @@ class ModelState {
     if (immutableModel) {
       state.model = model;
     } else {
-      state.hashCode = model.hashCode();
+      state.hashCode = hashCode;
     }
 
     return state;
   }
 
+  /**
+   * Create a copy of this state to use as the old state of a diff, without the pairing or
+   * movements of any previous diff.
+   */
+  ModelState copyForDiff() {
+    ModelState copy = new ModelState();
+    copy.lastMoveOp = 0;
+    copy.pair = null;
+    copy.id = id;
+    copy.position = position;
+    copy.hashCode = hashCode;
+    copy.model = model;
+    return copy;
+  }
+
   /**
    * Used for an item inserted into the new list when we need to track moves that effect the
    * inserted item in the old list.
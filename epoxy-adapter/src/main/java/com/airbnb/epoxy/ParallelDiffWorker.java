@@ -0,0 +1,165 @@
+package com.airbnb.epoxy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the per item work of a diff on several threads, for lists that are large enough for this
+ * to outweigh the cost of handing the work off. See {@link Epoxy#setParallelDiffThreshold(int)}.
+ * <p>
+ * The items are split into contiguous chunks, which the calling thread and the helper threads claim
+ * one at a time from a shared cursor until none are left. The calling thread then waits for the
+ * chunks that helpers are still processing, so each method blocks until all items are done. This
+ * way the calling thread keeps working while helper threads are busy or slow to start. Results are
+ * written to primitive arrays by position, so no synchronization is needed other than waiting for
+ * the helpers to finish.
+ */
+class ParallelDiffWorker {
+  /** More chunks than threads, so that a slow chunk doesn't leave the other threads idle. */
+  private static final int CHUNKS_PER_THREAD = 4;
+  private static final int THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+
+  private static ExecutorService executor;
+
+  private ParallelDiffWorker() {
+  }
+
+  private interface ChunkTask {
+    void run(int start, int end);
+  }
+
+  /**
+   * Check which of the given states, from start (inclusive) to end (exclusive), have a model that
+   * is not equal to the model of its pair. States without a pair are not considered changed.
+   *
+   * @param changed Set to whether the state at each position in the range changed.
+   */
+  static void findChangedStates(final List<ModelState> newStates, int start, int end,
+      final boolean[] changed) {
+    runInChunks(start, end, new ChunkTask() {
+      @Override
+      public void run(int start, int end) {
+        for (int i = start; i < end; i++) {
+          ModelState newItem = newStates.get(i);
+          ModelState previousItem = newItem.pair;
+          changed[i] = previousItem != null
+              && previousItem.model != newItem.model
+              && !previousItem.model.equals(newItem.model);
+        }
+      }
+    });
+  }
+
+  /** @return The hashCode of the model at each position. */
+  static int[] computeHashCodes(final List<? extends EpoxyModel<?>> models) {
+    final int[] hashCodes = new int[models.size()];
+
+    runInChunks(0, models.size(), new ChunkTask() {
+      @Override
+      public void run(int start, int end) {
+        for (int i = start; i < end; i++) {
+          hashCodes[i] = models.get(i).hashCode();
+        }
+      }
+    });
+
+    return hashCodes;
+  }
+
+  private static void runInChunks(final int start, final int end, final ChunkTask task) {
+    int itemCount = end - start;
+    if (THREAD_COUNT < 2 || itemCount <= 0) {
+      task.run(start, end);
+      return;
+    }
+
+    int targetChunkCount = Math.max(1, Math.min(itemCount, THREAD_COUNT * CHUNKS_PER_THREAD));
+    final int chunkSize = (itemCount + targetChunkCount - 1) / targetChunkCount;
+    final int chunkCount = (itemCount + chunkSize - 1) / chunkSize;
+    final AtomicInteger nextChunk = new AtomicInteger();
+
+    Runnable helper = new Runnable() {
+      @Override
+      public void run() {
+        runClaimedChunks(nextChunk, chunkCount, chunkSize, start, end, task);
+      }
+    };
+
+    // The calling thread works on chunks too, so one less helper than chunks is useful
+    int helperCount = Math.min(THREAD_COUNT - 1, chunkCount - 1);
+    List<Future<?>> helpers = new ArrayList<>(helperCount);
+    for (int i = 0; i < helperCount; i++) {
+      helpers.add(getExecutor().submit(helper));
+    }
+
+    try {
+      runClaimedChunks(nextChunk, chunkCount, chunkSize, start, end, task);
+      for (Future<?> future : helpers) {
+        awaitHelper(future);
+      }
+    } finally {
+      // Stop helpers that haven't started, and stop the others from claiming more chunks, if the
+      // work failed
+      nextChunk.set(chunkCount);
+      for (Future<?> future : helpers) {
+        future.cancel(false);
+      }
+    }
+  }
+
+  private static void runClaimedChunks(AtomicInteger nextChunk, int chunkCount, int chunkSize,
+      int start, int end, ChunkTask task) {
+    try {
+      int chunk;
+      while ((chunk = nextChunk.getAndIncrement()) < chunkCount) {
+        int chunkStart = start + chunk * chunkSize;
+        task.run(chunkStart, Math.min(chunkStart + chunkSize, end));
+      }
+    } catch (RuntimeException | Error e) {
+      // No other chunks need to be run once one fails
+      nextChunk.set(chunkCount);
+      throw e;
+    }
+  }
+
+  private static void awaitHelper(Future<?> helper) {
+    try {
+      helper.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while diffing models", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException("Failed to diff models", cause);
+    }
+  }
+
+  private static synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      // The calling thread processes a chunk too, so one less thread is needed
+      executor = Executors.newFixedThreadPool(THREAD_COUNT - 1, new ThreadFactory() {
+        private int threadNumber;
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "epoxy-diff-" + threadNumber++);
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return executor;
+  }
+}
@@ -19,12 +19,23 @@ public abstract class Typed2EpoxyController<T, U> extends EpoxyController {
   private T data1;
   private U data2;
   private boolean allowModelBuildRequests;
+  private DataEqualityPolicy dataEqualityPolicy = DataEqualityPolicy.NEVER_EQUAL;
+  private boolean hasSetData;
+  private int skippedModelBuildCount;
 
   /**
    * Call this with the latest data when you want models to be rebuilt. The data will be passed on
    * to {@link #buildModels(Object, Object)}
    */
   public void setData(T data1, U data2) {
+    if (hasSetData
+        && dataEqualityPolicy.isSameData(this.data1, data1)
+        && dataEqualityPolicy.isSameData(this.data2, data2)) {
+      skippedModelBuildCount++;
+      return;
+    }
+
+    hasSetData = true;
     this.data1 = data1;
     this.data2 = data2;
     allowModelBuildRequests = true;
@@ -32,6 +43,22 @@ public abstract class Typed2EpoxyController<T, U> extends EpoxyController {
     allowModelBuildRequests = false;
   }
 
+  /**
+   * Set how new data is compared to the previous data in {@link #setData(Object, Object)}. If the
+   * data is the same then the model build is skipped. By default models are always rebuilt.
+   */
+  public void setDataEqualityPolicy(DataEqualityPolicy dataEqualityPolicy) {
+    this.dataEqualityPolicy = dataEqualityPolicy;
+  }
+
+  /**
+   * The number of times models were not rebuilt because the data set was the same as the previous
+   * data, as decided by the {@link DataEqualityPolicy}.
+   */
+  public int getSkippedModelBuildCount() {
+    return skippedModelBuildCount;
+  }
+
   @Override
   public final void requestModelBuild() {
     if (!allowModelBuildRequests) {
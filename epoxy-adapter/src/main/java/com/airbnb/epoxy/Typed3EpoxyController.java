@@ -20,12 +20,24 @@ public abstract class Typed3EpoxyController<T, U, V> extends EpoxyController {
   private U data2;
   private V data3;
   private boolean allowModelBuildRequests;
+  private DataEqualityPolicy dataEqualityPolicy = DataEqualityPolicy.NEVER_EQUAL;
+  private boolean hasSetData;
+  private int skippedModelBuildCount;
 
   /**
    * Call this with the latest data when you want models to be rebuilt. The data will be passed on
    * to {@link #buildModels(Object, Object, Object)}
    */
   public void setData(T data1, U data2, V data3) {
+    if (hasSetData
+        && dataEqualityPolicy.isSameData(this.data1, data1)
+        && dataEqualityPolicy.isSameData(this.data2, data2)
+        && dataEqualityPolicy.isSameData(this.data3, data3)) {
+      skippedModelBuildCount++;
+      return;
+    }
+
+    hasSetData = true;
     this.data1 = data1;
     this.data2 = data2;
     this.data3 = data3;
@@ -34,6 +46,22 @@ public abstract class Typed3EpoxyController<T, U, V> extends EpoxyController {
     allowModelBuildRequests = false;
   }
 
+  /**
+   * Set how new data is compared to the previous data in {@link #setData(Object, Object, Object)}.
+   * If the data is the same then the model build is skipped. By default models are always rebuilt.
+   */
+  public void setDataEqualityPolicy(DataEqualityPolicy dataEqualityPolicy) {
+    this.dataEqualityPolicy = dataEqualityPolicy;
+  }
+
+  /**
+   * The number of times models were not rebuilt because the data set was the same as the previous
+   * data, as decided by the {@link DataEqualityPolicy}.
+   */
+  public int getSkippedModelBuildCount() {
+    return skippedModelBuildCount;
+  }
+
   @Override
   public final void requestModelBuild() {
     if (!allowModelBuildRequests) {
@@ -21,12 +21,25 @@ public abstract class Typed4EpoxyController<T, U, V, W> extends EpoxyController
   private V data3;
   private W data4;
   private boolean allowModelBuildRequests;
+  private DataEqualityPolicy dataEqualityPolicy = DataEqualityPolicy.NEVER_EQUAL;
+  private boolean hasSetData;
+  private int skippedModelBuildCount;
 
   /**
    * Call this with the latest data when you want models to be rebuilt. The data will be passed on
    * to {@link #buildModels(Object, Object, Object, Object)}
    */
   public void setData(T data1, U data2, V data3, W data4) {
+    if (hasSetData
+        && dataEqualityPolicy.isSameData(this.data1, data1)
+        && dataEqualityPolicy.isSameData(this.data2, data2)
+        && dataEqualityPolicy.isSameData(this.data3, data3)
+        && dataEqualityPolicy.isSameData(this.data4, data4)) {
+      skippedModelBuildCount++;
+      return;
+    }
+
+    hasSetData = true;
     this.data1 = data1;
     this.data2 = data2;
     this.data3 = data3;
@@ -36,6 +49,23 @@ public abstract class Typed4EpoxyController<T, U, V, W> extends EpoxyController
     allowModelBuildRequests = false;
   }
 
+  /**
+   * Set how new data is compared to the previous data in
+   * {@link #setData(Object, Object, Object, Object)}. If the data is the same then the model build
+   * is skipped. By default models are always rebuilt.
+   */
+  public void setDataEqualityPolicy(DataEqualityPolicy dataEqualityPolicy) {
+    this.dataEqualityPolicy = dataEqualityPolicy;
+  }
+
+  /**
+   * The number of times models were not rebuilt because the data set was the same as the previous
+   * data, as decided by the {@link DataEqualityPolicy}.
+   */
+  public int getSkippedModelBuildCount() {
+    return skippedModelBuildCount;
+  }
+
   @Override
   public final void requestModelBuild() {
     if (!allowModelBuildRequests) {
@@ -19,14 +19,39 @@ import android.support.annotation.Nullable;
 public abstract class TypedEpoxyController<T> extends EpoxyController {
   private T currentData;
   private boolean allowModelBuildRequests;
+  private DataEqualityPolicy dataEqualityPolicy = DataEqualityPolicy.NEVER_EQUAL;
+  private boolean hasSetData;
+  private int skippedModelBuildCount;
 
   public final void setData(T data) {
+    if (hasSetData && dataEqualityPolicy.isSameData(currentData, data)) {
+      skippedModelBuildCount++;
+      return;
+    }
+
+    hasSetData = true;
     currentData = data;
     allowModelBuildRequests = true;
     requestModelBuild();
     allowModelBuildRequests = false;
   }
 
+  /**
+   * Set how new data is compared to the previous data in {@link #setData(Object)}. If the data is
+   * the same then the model build is skipped. By default models are always rebuilt.
+   */
+  public void setDataEqualityPolicy(DataEqualityPolicy dataEqualityPolicy) {
+    this.dataEqualityPolicy = dataEqualityPolicy;
+  }
+
+  /**
+   * The number of times models were not rebuilt because the data set was the same as the previous
+   * data, as decided by the {@link DataEqualityPolicy}.
+   */
+  public int getSkippedModelBuildCount() {
+    return skippedModelBuildCount;
+  }
+
   @Override
   public final void requestModelBuild() {
     if (!allowModelBuildRequests) {
@@ -25,6 +25,7 @@ class UpdateOpHelper {
   private int numInsertionBatches;
   private int numRemovals;
   private int numRemovalBatches;
+  private int numUpdates;
 
   void reset() {
     opList.clear();
@@ -34,6 +35,7 @@ class UpdateOpHelper {
     numInsertionBatches = 0;
     numRemovals = 0;
     numRemovalBatches = 0;
+    numUpdates = 0;
   }
 
   void add(int indexToInsert) {
@@ -61,6 +63,8 @@ class UpdateOpHelper {
   }
 
   void update(final int indexToChange, EpoxyModel<?> payload) {
+    numUpdates++;
+
     if (isLastOp(UPDATE)) {
       if (lastOp.positionStart == indexToChange + 1) {
         // Change another item at the start of the batch range
@@ -72,6 +76,7 @@ class UpdateOpHelper {
       } else if (lastOp.contains(indexToChange)) {
         // This item is already included in the existing batch range, so we don't add any items
         // to the batch count, but we still need to add the new payload
+        numUpdates--;
         addItemsToLastOperation(0, payload);
       } else {
         // The item can't be batched with the previous update operation
@@ -157,6 +162,10 @@ class UpdateOpHelper {
     return moves.size();
   }
 
+  int getNumUpdates() {
+    return numUpdates;
+  }
+
   int getNumInsertionBatches() {
     return numInsertionBatches;
   }
@@ -3,6 +3,7 @@ package com.airbnb.epoxy;
 
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.support.annotation.Nullable;
 import android.support.v4.os.ParcelableCompat;
 import android.support.v4.os.ParcelableCompatCreatorCallbacks;
 import android.support.v4.util.LongSparseArray;
@@ -12,7 +13,12 @@ import android.view.View;
 import com.airbnb.epoxy.ViewHolderState.ViewState;
 import com.airbnb.viewmodeladapter.R;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Helper for {@link EpoxyAdapter} to store the state of Views in the adapter. This is useful for
@@ -29,9 +35,31 @@ import java.util.Collection;
  * <p/>
  * This class relies on the adapter having stable ids, as the state of a view is mapped to the id of
  * the {@link EpoxyModel}.
+ * <p/>
+ * The number of states kept, and their estimated total size in bytes, can be limited with {@link
+ * #setLimits(int, long)}. When a limit is exceeded the least recently saved or restored states are
+ * evicted. The size of a state is only estimated when a size limit is set or the total size is
+ * requested, since estimating it requires parceling the state. The parceled bytes from an estimate
+ * are kept until the state changes, and are reused when the states are parceled or written to a
+ * file so that each state is only serialized once.
  */
 @SuppressWarnings("WeakerAccess")
 class ViewHolderState extends LongSparseArray<ViewState> implements Parcelable {
+  private int maxStateCount = Integer.MAX_VALUE;
+  private long maxSizeBytes = Long.MAX_VALUE;
+  /**
+   * The estimated size of all saved states whose size is known, as the number of bytes they take up
+   * when parceled.
+   */
+  private long sizeBytes;
+  /** The saved states ordered from least to most recently saved or restored. */
+  private final LinkedHashMap<Long, ViewState> accessOrder = new LinkedHashMap<>(16, 0.75f, true);
+  /**
+   * States that were saved to a file by {@link #writeToFile(File, String)} and have not yet been
+   * read back. Each state is only read from the file when it is needed to restore a view.
+   */
+  @Nullable private ViewStateFile spilledStates;
+
   ViewHolderState() {
   }
 
@@ -50,7 +78,23 @@ class ViewHolderState extends LongSparseArray<ViewState> implements Parcelable {
     dest.writeInt(size);
     for (int i = 0; i < size; i++) {
       dest.writeLong(keyAt(i));
-      dest.writeParcelable(valueAt(i), 0);
+      ViewState state = valueAt(i);
+      if (state.marshalledBytes != null) {
+        appendMarshalled(dest, state.marshalledBytes);
+      } else {
+        dest.writeParcelable(state, 0);
+      }
+    }
+  }
+
+  /** Append bytes from {@link #marshall(ViewState)}, which were written with writeParcelable. */
+  private static void appendMarshalled(Parcel dest, byte[] marshalledBytes) {
+    Parcel parcel = Parcel.obtain();
+    try {
+      parcel.unmarshall(marshalledBytes, 0, marshalledBytes.length);
+      dest.appendFrom(parcel, 0, marshalledBytes.length);
+    } finally {
+      parcel.recycle();
     }
   }
 
@@ -66,16 +110,191 @@ class ViewHolderState extends LongSparseArray<ViewState> implements Parcelable {
 
       for (int i = 0; i < size; i++) {
         long key = source.readLong();
+        int startPosition = source.dataPosition();
         ViewState value = source.readParcelable(ViewState.class.getClassLoader());
+        value.sizeBytes = source.dataPosition() - startPosition;
+        state.sizeBytes += value.sizeBytes;
         state.put(key, value);
+        state.accessOrder.put(key, value);
       }
 
       return state;
     }
   };
 
+  /**
+   * Limit how many states are kept. If either limit is exceeded the least recently used states are
+   * evicted until both limits are satisfied.
+   *
+   * @param maxStateCount The maximum number of states to keep.
+   * @param maxSizeBytes  The maximum estimated size of all states, in bytes.
+   */
+  void setLimits(int maxStateCount, long maxSizeBytes) {
+    this.maxStateCount = maxStateCount;
+    this.maxSizeBytes = maxSizeBytes;
+    if (hasSizeLimit()) {
+      estimateUnknownSizes();
+    }
+    trimToLimits(null);
+  }
+
+  private boolean hasSizeLimit() {
+    return maxSizeBytes != Long.MAX_VALUE;
+  }
+
+  /**
+   * The estimated size of all saved states in bytes. This is the size the states take up when they
+   * are parceled in {@link #writeToParcel(Parcel, int)}, and includes states that have not yet been
+   * read back from a file.
+   * <p>
+   * If no size limit is set this estimates the size of each state that was saved since the last
+   * call, so it should not be called often.
+   */
+  long getSizeBytes() {
+    estimateUnknownSizes();
+    return sizeBytes + (spilledStates != null ? spilledStates.getSizeBytes() : 0);
+  }
+
+  private void estimateUnknownSizes() {
+    int size = size();
+    for (int i = 0; i < size; i++) {
+      ViewState state = valueAt(i);
+      if (state.sizeBytes == ViewState.SIZE_UNKNOWN) {
+        state.sizeBytes = state.estimateSizeBytes();
+        sizeBytes += state.sizeBytes;
+      }
+    }
+  }
+
+  private void removeSize(ViewState state) {
+    if (state.sizeBytes != ViewState.SIZE_UNKNOWN) {
+      sizeBytes -= state.sizeBytes;
+    }
+  }
+
+  /** Whether any states are saved, including states that have not been read from a file. */
+  boolean hasSavedStates() {
+    return size() > 0 || (spilledStates != null && spilledStates.size() > 0);
+  }
+
+  /** Remove the state saved for the given model id, if one exists. */
+  void removeState(long id) {
+    if (spilledStates != null) {
+      spilledStates.remove(id);
+    }
+
+    ViewState state = get(id);
+    if (state != null) {
+      removeSize(state);
+      remove(id);
+      accessOrder.remove(id);
+    }
+  }
+
+  /**
+   * Schedule all states to be written to the file for the given token in the given directory on a
+   * background thread, replacing what was previously written with the token. This is an alternative
+   * to parceling the states, for when they are too large to be saved in a Bundle.
+   *
+   * @param token A token from {@link ViewStateFile#newToken()}. Pass it to {@link
+   *              #readFromFile(File, String)} to restore the states.
+   */
+  void writeToFile(File directory, String token) {
+    int size = size();
+    long[] spilledIds = spilledStates != null ? spilledStates.getIds() : new long[0];
+    long[] ids = new long[size + spilledIds.length];
+    byte[][] records = new byte[ids.length][];
+
+    // States are marshalled on this thread since they are owned by the views that saved them. Only
+    // the file write happens in the background.
+    for (int i = 0; i < size; i++) {
+      ids[i] = keyAt(i);
+      ViewState state = valueAt(i);
+      records[i] = state.marshalledBytes != null ? state.marshalledBytes : marshall(state);
+    }
+
+    // States that were never read from the previous file are already marshalled
+    for (int i = 0; i < spilledIds.length; i++) {
+      ids[size + i] = spilledIds[i];
+      records[size + i] = spilledStates.get(spilledIds[i]);
+    }
+
+    ViewStateFile.write(directory, token, ids, records);
+  }
+
+  /**
+   * Restore states that were written with {@link #writeToFile(File, String)}. Individual states are
+   * only read from the file when a view with that id is restored.
+   */
+  static ViewHolderState readFromFile(File directory, String token) throws IOException {
+    ViewHolderState state = new ViewHolderState();
+    state.spilledStates = ViewStateFile.read(directory, token);
+    return state;
+  }
+
+  /**
+   * Read any states that are still in a file into memory. This must be done before the states are
+   * parceled.
+   */
+  void loadSpilledStates() {
+    if (spilledStates == null) {
+      return;
+    }
+
+    for (long id : spilledStates.getIds()) {
+      loadSpilledState(id);
+    }
+
+    spilledStates = null;
+  }
+
+  @Nullable
+  private ViewState loadSpilledState(long id) {
+    if (spilledStates == null) {
+      return null;
+    }
+
+    byte[] record = spilledStates.take(id);
+    if (record == null) {
+      return null;
+    }
+
+    ViewState state = unmarshall(record);
+    state.sizeBytes = record.length;
+    // The record is the state's parceled bytes, so they don't need to be marshalled again
+    state.marshalledBytes = record;
+    sizeBytes += state.sizeBytes;
+    put(id, state);
+    accessOrder.put(id, state);
+
+    trimToLimits(id);
+    return state;
+  }
+
+  private static byte[] marshall(ViewState state) {
+    Parcel parcel = Parcel.obtain();
+    try {
+      parcel.writeParcelable(state, 0);
+      return parcel.marshall();
+    } finally {
+      parcel.recycle();
+    }
+  }
+
+  private static ViewState unmarshall(byte[] record) {
+    Parcel parcel = Parcel.obtain();
+    try {
+      parcel.unmarshall(record, 0, record.length);
+      parcel.setDataPosition(0);
+      return parcel.readParcelable(ViewState.class.getClassLoader());
+    } finally {
+      parcel.recycle();
+    }
+  }
+
   public boolean hasStateForHolder(EpoxyViewHolder holder) {
-    return get(holder.getItemId()) != null;
+    return get(holder.getItemId()) != null
+        || (spilledStates != null && spilledStates.contains(holder.getItemId()));
   }
 
   public void save(Collection<EpoxyViewHolder> holders) {
@@ -93,13 +312,30 @@ class ViewHolderState extends LongSparseArray<ViewState> implements Parcelable {
     // Reuse the previous sparse array if available. We shouldn't need to clear it since the
     // exact same view type is being saved to it, which
     // should have identical ids for all its views, and will just overwrite the previous state.
+    if (spilledStates != null) {
+      // The new state replaces any state that was never read from a file
+      spilledStates.remove(holder.getItemId());
+    }
+
     ViewState state = get(holder.getItemId());
     if (state == null) {
       state = new ViewState();
+    } else {
+      removeSize(state);
     }
 
     state.save(holder.itemView);
+    if (hasSizeLimit()) {
+      state.sizeBytes = state.estimateSizeBytes();
+      sizeBytes += state.sizeBytes;
+    } else {
+      // Estimating the size parcels the whole state, so it is deferred until it is needed
+      state.sizeBytes = ViewState.SIZE_UNKNOWN;
+    }
     put(holder.getItemId(), state);
+    accessOrder.put(holder.getItemId(), state);
+
+    trimToLimits(holder.getItemId());
   }
 
   /**
@@ -112,16 +348,52 @@ class ViewHolderState extends LongSparseArray<ViewState> implements Parcelable {
     }
 
     ViewState state = get(holder.getItemId());
+    if (state == null) {
+      state = loadSpilledState(holder.getItemId());
+    }
+
     if (state != null) {
+      // Marks the state as the most recently used
+      accessOrder.get(holder.getItemId());
       state.restore(holder.itemView);
     }
   }
 
+  /**
+   * Evict the least recently used states until the limits are satisfied.
+   *
+   * @param idToKeep If not null, the state for this id is never evicted. This is used to keep the
+   *                 state that was just saved.
+   */
+  private void trimToLimits(@Nullable Long idToKeep) {
+    Iterator<Map.Entry<Long, ViewState>> iterator = accessOrder.entrySet().iterator();
+    while ((size() > maxStateCount || sizeBytes > maxSizeBytes) && iterator.hasNext()) {
+      Map.Entry<Long, ViewState> oldest = iterator.next();
+      long id = oldest.getKey();
+      if (idToKeep != null && id == idToKeep) {
+        continue;
+      }
+
+      iterator.remove();
+      removeSize(oldest.getValue());
+      remove(id);
+    }
+  }
+
   /**
    * A wrapper around a sparse array as a helper to save the state of a view. This also adds
    * parcelable support.
    */
   public static class ViewState extends SparseArray<Parcelable> implements Parcelable {
+    static final int SIZE_UNKNOWN = -1;
+
+    /** The estimated size of this state in bytes, or {@link #SIZE_UNKNOWN}. Not parceled. */
+    int sizeBytes;
+    /**
+     * The state as written by writeParcelable, kept from estimating its size until the state is
+     * saved again. Not parceled.
+     */
+    @Nullable byte[] marshalledBytes;
 
     ViewState() {
     }
@@ -134,6 +406,7 @@ class ViewHolderState extends LongSparseArray<ViewState> implements Parcelable {
     }
 
     public void save(View view) {
+      marshalledBytes = null;
       int originalId = view.getId();
       setIdIfNoneExists(view);
 
@@ -149,6 +422,28 @@ class ViewHolderState extends LongSparseArray<ViewState> implements Parcelable {
       view.setId(originalId);
     }
 
+    /**
+     * Estimate the size of this state by writing it to a parcel. This is the same size it will take
+     * up when the adapter's state is saved. The written bytes are kept so that saving the adapter's
+     * state doesn't need to write this state again.
+     */
+    int estimateSizeBytes() {
+      Parcel parcel = Parcel.obtain();
+      try {
+        parcel.writeParcelable(this, 0);
+        try {
+          marshalledBytes = parcel.marshall();
+        } catch (RuntimeException e) {
+          // States with binders or file descriptors can't be marshalled, so they are parceled
+          // again when saved
+          marshalledBytes = null;
+        }
+        return parcel.dataSize();
+      } finally {
+        parcel.recycle();
+      }
+    }
+
     /**
      * If a view hasn't had an id set we need to set a temporary one in order to save state, since a
      * view won't save its state unless it has an id. The view's id is also the key into the sparse
@@ -0,0 +1,359 @@
+package com.airbnb.epoxy;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Stores saved view states in a file instead of a Bundle, for when {@link ViewHolderState} is too
+ * large to be parceled efficiently. Each state is stored as an opaque record of bytes keyed by
+ * model id, so this class has no dependencies on Android and the parceling of states is left to
+ * {@link ViewHolderState}.
+ * <p>
+ * Files are written on a background thread, to a temporary file that is then renamed so a partially
+ * written file is never read. A file is read by memory mapping it, so that records are only paged
+ * in as they are needed when each model is bound. Reading a file does not delete it, so the same
+ * saved state can be restored more than once. Instead each adapter reuses one file, identified by
+ * a token from {@link #newToken()}, and overwrites it each time its state is saved. Any records
+ * that are still unused when state is saved again are copied to the new contents of the file.
+ * <p>
+ * Files that are no longer needed are deleted with {@link #delete(File, String)}. Files can still
+ * be left behind if the process dies, so the first time a directory is used in a process any view
+ * state files in it that have not been written or read for {@link #STALE_FILE_AGE_MILLIS} are
+ * deleted in the background.
+ * <p>
+ * The file format is a header of a magic number, version, and record count, followed by an index
+ * of each record's id and length, followed by the records.
+ */
+class ViewStateFile {
+  private static final int MAGIC = 0x45505859;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE_BYTES = 12;
+  private static final int INDEX_ENTRY_SIZE_BYTES = 12;
+  private static final String FILE_PREFIX = "epoxy_view_state_";
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+  /** Files that haven't been used for this long are assumed to belong to state that is gone. */
+  static final long STALE_FILE_AGE_MILLIS = 24 * 60 * 60 * 1000L;
+
+  private static ExecutorService writeExecutor;
+  /**
+   * Writes that have been scheduled but may not be finished. If a file is read in the same process
+   * that wrote it, such as after a configuration change, the read waits for the write to finish.
+   */
+  private static final ConcurrentMap<String, Future<?>> PENDING_WRITES =
+      new ConcurrentHashMap<>();
+  /** Directories that have been swept for stale files in this process. */
+  private static final Set<String> SWEPT_DIRECTORIES =
+      Collections.synchronizedSet(new HashSet<String>());
+
+  private final ByteBuffer buffer;
+  /** Maps each id to the index of its record in the arrays below. */
+  private final Map<Long, Integer> recordIndexById;
+  private final long[] ids;
+  private final int[] offsets;
+  private final int[] lengths;
+  private int remainingBytes;
+
+  private ViewStateFile(ByteBuffer buffer, long[] ids, int[] offsets, int[] lengths) {
+    this.buffer = buffer;
+    this.ids = ids;
+    this.offsets = offsets;
+    this.lengths = lengths;
+    recordIndexById = new HashMap<>(ids.length);
+
+    for (int i = 0; i < ids.length; i++) {
+      recordIndexById.put(ids[i], i);
+      remainingBytes += lengths[i];
+    }
+  }
+
+  /** Create a token that identifies a new file. The same token can be written many times. */
+  static String newToken() {
+    return FILE_PREFIX + UUID.randomUUID().toString();
+  }
+
+  /**
+   * Schedule the records to be written to the file for the given token in the given directory,
+   * replacing any records previously written with that token. Pass the token to {@link #read(File,
+   * String)} to read the records back.
+   */
+  static void write(File directory, final String token, final long[] ids,
+      final byte[][] records) {
+    if (ids.length != records.length) {
+      throw new IllegalArgumentException("Each id must have a record");
+    }
+
+    sweepStaleFilesOnce(directory);
+    final File file = new File(directory, token);
+
+    FutureTask<Void> writeTask = new FutureTask<Void>(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          writeFile(file, ids, records);
+        } catch (IOException e) {
+          throw new IllegalStateException("Failed to write view state to " + file, e);
+        }
+      }
+    }, null) {
+      @Override
+      protected void done() {
+        // A newer write with the same token may have been scheduled, which must stay tracked
+        PENDING_WRITES.remove(token, this);
+      }
+    };
+
+    // Registered before the task is started so the task can't finish before it is tracked. Writes
+    // run in order, so waiting for the newest write with a token also waits for any older ones.
+    PENDING_WRITES.put(token, writeTask);
+    getWriteExecutor().execute(writeTask);
+  }
+
+  /**
+   * Read records that were written with {@link #write(File, String, long[], byte[][])}. This waits
+   * for the write to finish if it is still in progress. The file is kept, so it can be read again.
+   */
+  static ViewStateFile read(File directory, String token) throws IOException {
+    awaitPendingWrite(token);
+
+    File file = new File(directory, token);
+    MappedByteBuffer buffer;
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = randomAccessFile.getChannel();
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } finally {
+      randomAccessFile.close();
+    }
+
+    // Mark the file as in use so it isn't swept as stale while its state may be restored again.
+    // The mapping stays valid if the file is later replaced or deleted.
+    //noinspection ResultOfMethodCallIgnored
+    file.setLastModified(System.currentTimeMillis());
+    sweepStaleFilesOnce(directory);
+
+    if (buffer.remaining() < HEADER_SIZE_BYTES || buffer.getInt() != MAGIC) {
+      throw new IOException("Not a view state file: " + file);
+    }
+
+    int version = buffer.getInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported view state file version: " + version);
+    }
+
+    int count = buffer.getInt();
+    long[] ids = new long[count];
+    int[] offsets = new int[count];
+    int[] lengths = new int[count];
+
+    int offset = HEADER_SIZE_BYTES + count * INDEX_ENTRY_SIZE_BYTES;
+    for (int i = 0; i < count; i++) {
+      ids[i] = buffer.getLong();
+      lengths[i] = buffer.getInt();
+      offsets[i] = offset;
+      offset += lengths[i];
+    }
+
+    if (offset > buffer.limit()) {
+      throw new IOException("View state file is truncated: " + file);
+    }
+
+    return new ViewStateFile(buffer, ids, offsets, lengths);
+  }
+
+  /** Schedule the file for the given token to be deleted, once any pending write finishes. */
+  static void delete(File directory, String token) {
+    final File file = new File(directory, token);
+    getWriteExecutor().execute(new Runnable() {
+      @Override
+      public void run() {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+      }
+    });
+  }
+
+  /**
+   * Delete view state files in the directory that haven't been used recently, the first time the
+   * directory is used in this process. These are left behind when state is never restored, or when
+   * the process dies during a write.
+   */
+  private static void sweepStaleFilesOnce(final File directory) {
+    if (!SWEPT_DIRECTORIES.add(directory.getAbsolutePath())) {
+      return;
+    }
+
+    getWriteExecutor().execute(new Runnable() {
+      @Override
+      public void run() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+          return;
+        }
+
+        long staleBefore = System.currentTimeMillis() - STALE_FILE_AGE_MILLIS;
+        for (File file : files) {
+          if (file.getName().startsWith(FILE_PREFIX) && file.lastModified() < staleBefore) {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+          }
+        }
+      }
+    });
+  }
+
+  private static void awaitPendingWrite(String token) throws IOException {
+    Future<?> pendingWrite = PENDING_WRITES.get(token);
+    if (pendingWrite == null) {
+      return;
+    }
+
+    try {
+      pendingWrite.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for view state to be written", e);
+    } catch (ExecutionException e) {
+      throw new IOException("Failed to write view state", e.getCause());
+    }
+  }
+
+  private static void writeFile(File file, long[] ids, byte[][] records) throws IOException {
+    ByteBuffer index = ByteBuffer.allocate(HEADER_SIZE_BYTES + ids.length * INDEX_ENTRY_SIZE_BYTES);
+    index.putInt(MAGIC);
+    index.putInt(VERSION);
+    index.putInt(ids.length);
+    for (int i = 0; i < ids.length; i++) {
+      index.putLong(ids[i]);
+      index.putInt(records[i].length);
+    }
+    index.flip();
+
+    ByteBuffer[] buffers = new ByteBuffer[records.length + 1];
+    buffers[0] = index;
+    for (int i = 0; i < records.length; i++) {
+      buffers[i + 1] = ByteBuffer.wrap(records[i]);
+    }
+
+    // Write to a temporary file first and rename it once complete, so a partially written file is
+    // never read if the process dies during the write.
+    File tempFile = new File(file.getPath() + TEMP_FILE_SUFFIX);
+    FileOutputStream outputStream = new FileOutputStream(tempFile);
+    try {
+      FileChannel channel = outputStream.getChannel();
+      long remaining = 0;
+      for (ByteBuffer buffer : buffers) {
+        remaining += buffer.remaining();
+      }
+      while (remaining > 0) {
+        remaining -= channel.write(buffers);
+      }
+      channel.force(false);
+    } finally {
+      outputStream.close();
+    }
+
+    // The rename replaces the previous contents of the file atomically. Readers that mapped the
+    // previous contents keep them.
+    if (!tempFile.renameTo(file)) {
+      //noinspection ResultOfMethodCallIgnored
+      tempFile.delete();
+      throw new IOException("Failed to rename " + tempFile + " to " + file);
+    }
+  }
+
+  private static synchronized ExecutorService getWriteExecutor() {
+    if (writeExecutor == null) {
+      writeExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "epoxy-view-state-writer");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return writeExecutor;
+  }
+
+  /** Whether a record exists for the id and has not been removed. */
+  boolean contains(long id) {
+    return recordIndexById.containsKey(id);
+  }
+
+  /**
+   * Remove the record for the given id and return it, or return null if no record exists.
+   */
+  byte[] take(long id) {
+    Integer recordIndex = recordIndexById.remove(id);
+    if (recordIndex == null) {
+      return null;
+    }
+
+    remainingBytes -= lengths[recordIndex];
+    return readRecord(recordIndex);
+  }
+
+  /** Remove the record for the given id, if it exists. */
+  void remove(long id) {
+    Integer recordIndex = recordIndexById.remove(id);
+    if (recordIndex != null) {
+      remainingBytes -= lengths[recordIndex];
+    }
+  }
+
+  /** The number of records that have not been removed. */
+  int size() {
+    return recordIndexById.size();
+  }
+
+  /** The total size of the records that have not been removed. */
+  int getSizeBytes() {
+    return remainingBytes;
+  }
+
+  /** The ids of all records that have not been removed, in the order they were written. */
+  long[] getIds() {
+    long[] remainingIds = new long[recordIndexById.size()];
+    int count = 0;
+    for (long id : ids) {
+      if (recordIndexById.containsKey(id)) {
+        remainingIds[count++] = id;
+      }
+    }
+    return remainingIds;
+  }
+
+  /** Return the record for the given id without removing it, or null if no record exists. */
+  byte[] get(long id) {
+    Integer recordIndex = recordIndexById.get(id);
+    return recordIndex != null ? readRecord(recordIndex) : null;
+  }
+
+  private byte[] readRecord(int recordIndex) {
+    byte[] record = new byte[lengths[recordIndex]];
+    // Duplicate the buffer so the shared position isn't changed
+    ByteBuffer source = buffer.duplicate();
+    source.position(offsets[recordIndex]);
+    source.get(record);
+    return record;
+  }
+}
@@ -29,7 +29,11 @@ class ViewTypeManager {
     return getViewTypeInternal(model);
   }
 
-  private static int getViewTypeInternal(EpoxyModel<?> model) {
+  /**
+   * Get the view type of the model without storing it as the last model looked up. Callers are
+   * responsible for being able to provide a model for the view type when a view is created.
+   */
+  static int getViewTypeInternal(EpoxyModel<?> model) {
     int defaultViewType = model.getViewType();
     if (defaultViewType != 0) {
       return defaultViewType;
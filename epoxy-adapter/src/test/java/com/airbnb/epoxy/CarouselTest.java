@@ -0,0 +1,141 @@
+package com.airbnb.epoxy;
+
+import android.app.Activity;
+import android.support.v7.widget.RecyclerView.AdapterDataObserver;
+import android.support.v7.widget.RecyclerView.RecycledViewPool;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+@Config(sdk = 21, manifest = TestRunner.MANIFEST_PATH)
+@RunWith(TestRunner.class)
+public class CarouselTest {
+
+  private Activity activity;
+
+  @Before
+  public void setup() {
+    activity = Robolectric.setupActivity(Activity.class);
+  }
+
+  @Test
+  public void settingModelsAgainIsDiffed() {
+    Carousel carousel = new Carousel(activity);
+    List<TestModel> models = Arrays.asList(new TestModel(1), new TestModel(2));
+    carousel.setModels(models);
+    assertSame(carousel.getController().getAdapter(), carousel.getAdapter());
+
+    AdapterDataObserver observer = mock(AdapterDataObserver.class);
+    carousel.getAdapter().registerAdapterDataObserver(observer);
+
+    List<TestModel> updatedModels = new ArrayList<>(models);
+    updatedModels.set(1, new TestModel(2).value(models.get(1).value() + 1));
+    carousel.setModels(updatedModels);
+
+    assertSame(carousel.getController().getAdapter(), carousel.getAdapter());
+    verify(observer).onItemRangeChanged(1, 1, null);
+    verifyNoMoreInteractions(observer);
+  }
+
+  @Test
+  public void rebindingCarouselModelIsDiffed() {
+    TestModel firstModel = new TestModel(1);
+    CarouselModel carouselModel = new CarouselModel()
+        .models(Arrays.asList(firstModel, new TestModel(2)));
+    Carousel carousel = carouselModel.buildView(new FrameLayout(activity));
+    carouselModel.bind(carousel);
+
+    AdapterDataObserver observer = mock(AdapterDataObserver.class);
+    carousel.getAdapter().registerAdapterDataObserver(observer);
+
+    carouselModel.models(Arrays.asList(firstModel, new TestModel(2), new TestModel(3)));
+    carouselModel.bind(carousel);
+
+    assertEquals(3, carousel.getAdapter().getItemCount());
+    verify(observer).onItemRangeInserted(2, 1);
+    verifyNoMoreInteractions(observer);
+  }
+
+  @Test
+  public void unbindingCarouselModelClearsModels() {
+    CarouselModel carouselModel = new CarouselModel()
+        .models(Arrays.asList(new TestModel(1), new TestModel(2)));
+    Carousel carousel = carouselModel.buildView(new FrameLayout(activity));
+    carouselModel.bind(carousel);
+
+    carouselModel.unbind(carousel);
+
+    assertNull(carousel.getAdapter());
+    assertEquals(0, carousel.getController().getAdapter().getItemCount());
+  }
+
+  @Test
+  public void carouselsShareViewPoolBeforeAttach() {
+    Carousel first = new Carousel(activity);
+    Carousel second = new Carousel(activity);
+
+    first.setModels(Arrays.asList(new TestModel()));
+    second.setModels(Arrays.asList(new TestModel()));
+
+    assertSame(first.getRecycledViewPool(), second.getRecycledViewPool());
+  }
+
+  @Test
+  public void sharedViewPoolIsKeptWhenAttached() {
+    Carousel carousel = new Carousel(activity);
+    carousel.setModels(Arrays.asList(new TestModel()));
+    RecycledViewPool pool = carousel.getRecycledViewPool();
+
+    FrameLayout container = new FrameLayout(activity);
+    activity.setContentView(container);
+    container.addView(carousel);
+
+    assertSame(pool, carousel.getRecycledViewPool());
+  }
+
+  @Test
+  public void carouselsWithoutActivityShareViewPoolOnceAttached() {
+    FrameLayout container = new FrameLayout(activity);
+    activity.setContentView(container);
+
+    Carousel first = new Carousel(RuntimeEnvironment.application);
+    Carousel second = new Carousel(RuntimeEnvironment.application);
+    first.setModels(Arrays.asList(new TestModel()));
+    second.setModels(Arrays.asList(new TestModel()));
+
+    container.addView(first);
+    container.addView(second);
+
+    assertSame(first.getRecycledViewPool(), second.getRecycledViewPool());
+  }
+
+  @Test
+  public void customViewPoolIsNotReplaced() {
+    Carousel carousel = new Carousel(activity);
+    RecycledViewPool customPool = new RecycledViewPool();
+    carousel.setRecycledViewPool(customPool);
+
+    carousel.setModels(Arrays.asList(new TestModel()));
+    FrameLayout container = new FrameLayout(activity);
+    activity.setContentView(container);
+    container.addView(carousel);
+
+    assertSame(customPool, carousel.getRecycledViewPool());
+  }
+}
@@ -1,5 +1,6 @@
 package com.airbnb.epoxy;
 
+import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.RecyclerView.AdapterDataObserver;
 
 import com.airbnb.epoxy.EpoxyController.Interceptor;
@@ -7,12 +8,18 @@ import com.airbnb.epoxy.EpoxyController.Interceptor;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
 
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -88,6 +95,37 @@ public class EpoxyControllerTest {
     assertEquals(1, controller.getAdapter().getItemCount());
   }
 
+  int duplicatesFiltered;
+
+  @Test
+  public void filterDuplicatesKeepsFirstOfEachIdInOrder() {
+    final long[] ids = {1, 2, 1, 3, 2, 2, 4, 1};
+    EpoxyController controller = new EpoxyController() {
+
+      @Override
+      protected void buildModels() {
+        for (long id : ids) {
+          new TestModel(id).addTo(this);
+        }
+      }
+
+      @Override
+      protected void onExceptionSwallowed(RuntimeException exception) {
+        duplicatesFiltered++;
+      }
+    };
+
+    controller.setFilterDuplicates(true);
+    controller.requestModelBuild();
+
+    EpoxyControllerAdapter adapter = controller.getAdapter();
+    assertEquals(4, duplicatesFiltered);
+    assertEquals(4, adapter.getItemCount());
+    for (int i = 0; i < 4; i++) {
+      assertEquals(i + 1, adapter.getItemId(i));
+    }
+  }
+
   @Test(expected = IllegalStateException.class)
   public void throwOnDuplicatesIfNotFiltering() {
     EpoxyController controller = new EpoxyController() {
@@ -363,4 +401,297 @@ public class EpoxyControllerTest {
     controller.requestModelBuild();
     assertEquals(testModels, adapter.getCurrentModels());
   }
-}
\ No newline at end of file
+
+  @Test
+  public void itemIdsAndViewTypesFollowMoves() {
+    SimpleEpoxyController controller = new SimpleEpoxyController();
+    EpoxyControllerAdapter adapter = controller.getAdapter();
+    List<EpoxyModel<?>> models = new ArrayList<>();
+    models.add(new TestModel(1));
+    models.add(new TestModel(2).layout(2));
+    models.add(new TestModel(3).layout(3));
+    controller.setModels(models);
+
+    controller.moveModel(0, 2);
+    controller.moveModel(2, 1);
+
+    List<EpoxyModel<?>> currentModels = adapter.getCurrentModels();
+    for (int i = 0; i < currentModels.size(); i++) {
+      assertEquals(currentModels.get(i).id(), adapter.getItemId(i));
+      assertEquals(ViewTypeManager.getViewTypeInternal(currentModels.get(i)),
+          adapter.getItemViewType(i));
+    }
+  }
+
+  @Test
+  public void spanSizesAreUpdatedWithSpanCount() {
+    SimpleEpoxyController controller = new SimpleEpoxyController();
+    EpoxyControllerAdapter adapter = controller.getAdapter();
+    List<EpoxyModel<?>> models = new ArrayList<>();
+    models.add(new TestModel(1));
+    models.add(new TestModel(2).spanSizeOverride(new EpoxyModel.SpanSizeOverrideCallback() {
+      @Override
+      public int getSpanSize(int totalSpanCount, int position, int itemCount) {
+        return totalSpanCount / 2;
+      }
+    }));
+    controller.setModels(models);
+
+    controller.setSpanCount(2);
+    assertEquals(2, adapter.getSpanSizeLookup().getSpanSize(0));
+    assertEquals(1, adapter.getSpanSizeLookup().getSpanSize(1));
+
+    controller.setSpanCount(4);
+    assertEquals(4, adapter.getSpanSizeLookup().getSpanSize(0));
+    assertEquals(2, adapter.getSpanSizeLookup().getSpanSize(1));
+  }
+
+  @Test
+  public void modelPositionsFollowDiffsAndMoves() {
+    SimpleEpoxyController controller = new SimpleEpoxyController();
+    EpoxyControllerAdapter adapter = controller.getAdapter();
+    TestModel model1 = new TestModel(1);
+    TestModel model2 = new TestModel(2);
+    TestModel model3 = new TestModel(3);
+    List<EpoxyModel<?>> models = new ArrayList<>();
+    models.add(model1);
+    models.add(model2);
+    models.add(model3);
+    controller.setModels(models);
+
+    controller.moveModel(0, 2);
+    assertEquals(2, adapter.getModelPosition(model1));
+    assertEquals(0, adapter.getModelPosition(model2));
+    assertEquals(model1, adapter.getModelById(1));
+
+    List<EpoxyModel<?>> newModels = new ArrayList<>();
+    newModels.add(model3);
+    newModels.add(model1);
+    controller.setModels(newModels);
+
+    assertArrayEquals(new int[]{1, RecyclerView.NO_POSITION, 0},
+        adapter.findPositionsForIds(new long[]{1, 2, 3}));
+    assertNull(adapter.getModelById(2));
+  }
+
+  @Test
+  public void buildsAreScheduledWithModelBuildScheduler() {
+    final List<Runnable> scheduledBuilds = new ArrayList<>();
+    final List<Long> buildDurations = new ArrayList<>();
+    SimpleEpoxyController controller = new SimpleEpoxyController();
+    controller.setModelBuildScheduler(new ModelBuildScheduler() {
+      @Override
+      public void scheduleBuild(Runnable buildRunnable, int delayMs) {
+        scheduledBuilds.add(buildRunnable);
+      }
+
+      @Override
+      public void cancelBuild(Runnable buildRunnable) {
+        scheduledBuilds.remove(buildRunnable);
+      }
+
+      @Override
+      public void onBuildFinished(long durationNanos) {
+        buildDurations.add(durationNanos);
+      }
+    });
+
+    List<EpoxyModel<?>> models = new ArrayList<>();
+    models.add(new TestModel(1));
+    // The first build is done immediately
+    controller.setModels(models);
+    assertEquals(1, controller.getAdapter().getItemCount());
+    assertEquals(1, buildDurations.size());
+
+    models.add(new TestModel(2));
+    controller.setModels(models);
+    assertEquals(1, controller.getAdapter().getItemCount());
+    assertEquals(1, scheduledBuilds.size());
+
+    scheduledBuilds.remove(0).run();
+    assertEquals(2, controller.getAdapter().getItemCount());
+    assertEquals(2, buildDurations.size());
+  }
+
+  @Test
+  public void modelsAreDiffedIncrementallyWithTimeBudget() {
+    ShadowLooper.pauseMainLooper();
+    try {
+      AdapterDataObserver observer = mock(AdapterDataObserver.class);
+      SimpleEpoxyController controller = new SimpleEpoxyController();
+      EpoxyControllerAdapter adapter = controller.getAdapter();
+      // A tiny budget so that the diff has to be continued several times
+      controller.setDiffTimeBudgetMs(0.001f);
+
+      List<EpoxyModel<?>> models = new ArrayList<>();
+      for (int i = 0; i < 2000; i++) {
+        models.add(new TestModel(i));
+      }
+      // The first models are set immediately
+      controller.setModels(models);
+      assertEquals(2000, adapter.getItemCount());
+      adapter.registerAdapterDataObserver(observer);
+
+      List<EpoxyModel<?>> newModels = new ArrayList<>(models.subList(1, 2000));
+      newModels.add(new TestModel(2000));
+      controller.setModels(newModels);
+      ShadowLooper.runMainLooperOneTask();
+
+      // The build ran, but the adapter keeps the old models until the diff is done
+      assertEquals(2000, adapter.getItemCount());
+      assertEquals(models.get(0), adapter.getModelAtPosition(0));
+      assertEquals(0, adapter.getModelPosition(models.get(0)));
+      verifyNoMoreInteractions(observer);
+
+      // A build requested during the diff is run after it
+      List<EpoxyModel<?>> finalModels = new ArrayList<>(newModels);
+      finalModels.add(new TestModel(2001));
+      controller.setModels(finalModels);
+      ShadowLooper.runUiThreadTasks();
+
+      assertEquals(finalModels, adapter.getCopyOfModels());
+      assertEquals(RecyclerView.NO_POSITION, adapter.getModelPosition(models.get(0)));
+      verify(observer).onItemRangeRemoved(0, 1);
+      verify(observer).onItemRangeInserted(1999, 1);
+      verify(observer).onItemRangeInserted(2000, 1);
+      verifyNoMoreInteractions(observer);
+    } finally {
+      ShadowLooper.unPauseMainLooper();
+    }
+  }
+
+  @Test
+  public void parallelComparisonsAreContinuedAcrossDiffSteps() {
+    ShadowLooper.pauseMainLooper();
+    Epoxy.setParallelDiffThreshold(100);
+    try {
+      AdapterDataObserver observer = mock(AdapterDataObserver.class);
+      SimpleEpoxyController controller = new SimpleEpoxyController();
+      EpoxyControllerAdapter adapter = controller.getAdapter();
+      controller.setDiffTimeBudgetMs(0.001f);
+
+      List<EpoxyModel<?>> models = new ArrayList<>();
+      for (int i = 0; i < 5000; i++) {
+        models.add(new TestModel(i));
+      }
+      controller.setModels(models);
+      adapter.registerAdapterDataObserver(observer);
+
+      // Changes both before and after the first block of parallel comparisons
+      List<EpoxyModel<?>> newModels = new ArrayList<>(models);
+      newModels.set(10, ((TestModel) models.get(10)).clone().incrementValue());
+      newModels.set(4000, ((TestModel) models.get(4000)).clone().incrementValue());
+      controller.setModels(newModels);
+      ShadowLooper.runUiThreadTasks();
+
+      assertEquals(newModels, adapter.getCopyOfModels());
+      verify(observer).onItemRangeChanged(eq(10), eq(1), any());
+      verify(observer).onItemRangeChanged(eq(4000), eq(1), any());
+      verifyNoMoreInteractions(observer);
+    } finally {
+      Epoxy.setParallelDiffThreshold(0);
+      ShadowLooper.unPauseMainLooper();
+    }
+  }
+
+  @Test
+  public void largeChangeSetsAreRefreshedWithPolicy() {
+    AdapterDataObserver observer = mock(AdapterDataObserver.class);
+    SimpleEpoxyController controller = new SimpleEpoxyController();
+    controller.setLargeChangePolicy(
+        new LargeChangePolicy(LargeChangePolicy.REFRESH).maxChangedFraction(0.5f));
+
+    List<EpoxyModel<?>> models = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      models.add(new TestModel(i));
+    }
+    controller.setModels(models);
+    controller.getAdapter().registerAdapterDataObserver(observer);
+
+    // A small change is notified normally
+    List<EpoxyModel<?>> smallChange = new ArrayList<>(models);
+    smallChange.remove(0);
+    controller.setModels(smallChange);
+    verify(observer).onItemRangeRemoved(0, 1);
+
+    // Replacing most models is notified as a single change
+    List<EpoxyModel<?>> largeChange = new ArrayList<>(smallChange.subList(0, 3));
+    for (int i = 10; i < 17; i++) {
+      largeChange.add(new TestModel(i));
+    }
+    controller.setModels(largeChange);
+    verify(observer).onChanged();
+    verifyNoMoreInteractions(observer);
+
+    assertEquals(largeChange, controller.getAdapter().getCopyOfModels());
+    assertEquals(3, controller.getAdapter().getModelPosition(largeChange.get(3)));
+  }
+
+  int dragSessionBuildCount;
+
+  @Test
+  public void buildsAreDeferredUntilDragSessionEnds() {
+    EpoxyController controller = new EpoxyController() {
+      @Override
+      protected void buildModels() {
+        dragSessionBuildCount++;
+        for (int i = 0; i < 3; i++) {
+          new TestModel(i).addTo(this);
+        }
+      }
+    };
+    controller.requestModelBuild();
+    assertEquals(1, dragSessionBuildCount);
+
+    controller.startDragSession();
+    controller.moveModel(0, 2);
+    controller.moveModel(2, 1);
+    controller.requestModelBuild();
+
+    assertEquals(1, dragSessionBuildCount);
+    assertEquals(0, controller.getAdapter().getModelAtPosition(1).id());
+    assertEquals(1, controller.getAdapter().getModelAtPosition(0).id());
+
+    controller.endDragSession();
+    assertEquals(2, dragSessionBuildCount);
+    assertEquals(0, controller.getAdapter().getModelAtPosition(0).id());
+    assertFalse(controller.isDragSessionActive());
+  }
+
+  long memoDataVersion;
+  int memoModelsCreated;
+
+  @Test
+  public void memoizedModelsAreReusedUntilVersionChanges() {
+    AdapterDataObserver observer = mock(AdapterDataObserver.class);
+    final EpoxyController.ModelFactory<TestModel> factory =
+        new EpoxyController.ModelFactory<TestModel>() {
+          @Override
+          public TestModel createModel() {
+            memoModelsCreated++;
+            return new TestModel(1);
+          }
+        };
+
+    EpoxyController controller = new EpoxyController() {
+      @Override
+      protected void buildModels() {
+        memo("key", memoDataVersion, factory).addTo(this);
+      }
+    };
+
+    controller.requestModelBuild();
+    EpoxyModel<?> firstModel = controller.getAdapter().getModelAtPosition(0);
+    controller.getAdapter().registerAdapterDataObserver(observer);
+
+    controller.requestImmediateModelBuild();
+    assertEquals(1, memoModelsCreated);
+    assertTrue(firstModel == controller.getAdapter().getModelAtPosition(0));
+    verifyNoMoreInteractions(observer);
+
+    memoDataVersion++;
+    controller.requestImmediateModelBuild();
+    assertEquals(2, memoModelsCreated);
+    assertTrue(firstModel != controller.getAdapter().getModelAtPosition(0));
+  }
+}
@@ -0,0 +1,156 @@
+package com.airbnb.epoxy;
+
+import android.support.v7.widget.RecyclerView.AdapterDataObserver;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+@Config(sdk = 21, manifest = TestRunner.MANIFEST_PATH)
+@RunWith(TestRunner.class)
+public class EpoxyTest {
+
+  private final List<RuntimeException> swallowedExceptions = new ArrayList<>();
+  private final List<ValidatedModel> models = new ArrayList<>();
+
+  private final EpoxyController controller = new EpoxyController() {
+    @Override
+    protected void buildModels() {
+      ValidatedModel model = new ValidatedModel(1);
+      models.add(model);
+      model.addTo(this);
+    }
+
+    @Override
+    protected void onExceptionSwallowed(RuntimeException exception) {
+      swallowedExceptions.add(exception);
+    }
+  };
+
+  @After
+  public void resetConfiguration() {
+    Epoxy.setValidationSampleRate(1);
+    Epoxy.setValidationFrameBudgetMs(0);
+    Epoxy.setSwallowValidationExceptions(false);
+    Epoxy.setParallelDiffThreshold(0);
+  }
+
+  @Test(expected = ImmutableModelException.class)
+  public void validationThrowsByDefault() {
+    controller.requestModelBuild();
+    models.get(0).mutate();
+  }
+
+  @Test
+  public void validationExceptionsCanBeSwallowed() {
+    Epoxy.setSwallowValidationExceptions(true);
+    controller.requestModelBuild();
+
+    ValidatedModel model = models.get(0);
+    model.mutate();
+    model.value(model.value() + 1);
+    model.validateStateHasNotChangedSinceAdded("Changed", 0);
+    // Once swallowed the change is accepted, so it isn't reported again
+    model.validateStateHasNotChangedSinceAdded("Changed", 0);
+
+    assertEquals(2, swallowedExceptions.size());
+    assertTrue(swallowedExceptions.get(0) instanceof ImmutableModelException);
+    assertTrue(swallowedExceptions.get(1) instanceof ImmutableModelException);
+  }
+
+  @Test
+  public void validationIsSampledByBuild() {
+    Epoxy.setSwallowValidationExceptions(true);
+    Epoxy.setValidationSampleRate(3);
+
+    for (int i = 0; i < 6; i++) {
+      controller.requestImmediateModelBuild();
+      models.get(i).mutate();
+    }
+
+    assertEquals(2, swallowedExceptions.size());
+  }
+
+  @Test
+  public void validationCanBeDisabled() {
+    Epoxy.setValidationSampleRate(0);
+    controller.requestModelBuild();
+    models.get(0).mutate();
+
+    assertTrue(swallowedExceptions.isEmpty());
+  }
+
+  @Test
+  public void changesAreFoundInParallelForImmutableModels() {
+    Epoxy.setParallelDiffThreshold(10);
+    AdapterDataObserver observer = mock(AdapterDataObserver.class);
+    SimpleEpoxyController simpleController = new SimpleEpoxyController();
+
+    List<EpoxyModel<?>> models = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      models.add(new TestModel(i));
+    }
+    simpleController.setModels(models);
+    simpleController.getAdapter().registerAdapterDataObserver(observer);
+
+    List<EpoxyModel<?>> changedModels = new ArrayList<>(models);
+    for (int i = 40; i < 43; i++) {
+      changedModels.set(i, new TestModel(i));
+    }
+    changedModels.set(90, new TestModel(90));
+    simpleController.setModels(changedModels);
+
+    verify(observer).onItemRangeChanged(eq(40), eq(3), any());
+    verify(observer).onItemRangeChanged(eq(90), eq(1), any());
+    verifyNoMoreInteractions(observer);
+  }
+
+  @Test
+  public void changesAreFoundInParallelForMutableModels() {
+    Epoxy.setParallelDiffThreshold(10);
+    AdapterDataObserver observer = mock(AdapterDataObserver.class);
+    TestAdapter adapter = new TestAdapter();
+
+    for (int i = 0; i < 100; i++) {
+      adapter.models.add(new TestModel(i));
+    }
+    adapter.notifyModelsChanged();
+    adapter.registerAdapterDataObserver(observer);
+
+    ((TestModel) adapter.models.get(5)).incrementValue();
+    ((TestModel) adapter.models.get(6)).incrementValue();
+    adapter.notifyModelsChanged();
+
+    verify(observer).onItemRangeChanged(eq(5), eq(2), any());
+    verifyNoMoreInteractions(observer);
+  }
+
+  static class ValidatedModel extends TestModel {
+
+    ValidatedModel(long id) {
+      super(id);
+    }
+
+    @Override
+    public void addTo(EpoxyController controller) {
+      super.addTo(controller);
+      addWithDebugValidation(controller);
+    }
+
+    void mutate() {
+      onMutation();
+    }
+  }
+}
@@ -0,0 +1,191 @@
+package com.airbnb.epoxy;
+
+import android.graphics.Point;
+import android.graphics.Rect;
+import android.support.v7.widget.RecyclerView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+@Config(sdk = 21, manifest = TestRunner.MANIFEST_PATH)
+@RunWith(TestRunner.class)
+public class GlobalModelBuildSchedulerTest {
+
+  private final GlobalModelBuildScheduler globalScheduler = new GlobalModelBuildScheduler();
+  private final List<String> builds = new ArrayList<>();
+
+  @Before
+  public void setup() {
+    ShadowLooper.pauseMainLooper();
+  }
+
+  @After
+  public void tearDown() {
+    ShadowLooper.unPauseMainLooper();
+  }
+
+  @Test
+  public void visibleBuildsRunBeforeHiddenBuilds() {
+    RecordingController hidden = createController("hidden", false);
+    RecordingController visible = createController("visible", true);
+
+    hidden.requestModelBuild();
+    visible.requestModelBuild();
+    runFrame();
+
+    assertEquals(Collections.singletonList("visible"), builds);
+
+    globalScheduler.dispatchIdle();
+    assertEquals(Arrays.asList("visible", "hidden"), builds);
+  }
+
+  @Test
+  public void frameBudgetIsSharedByVisibleBuilds() {
+    globalScheduler.setFrameBudgetMs(6);
+    RecordingController first = createController("first", true);
+    RecordingController second = createController("second", true);
+    RecordingController third = createController("third", true);
+    first.buildDurationMs = 4;
+    second.buildDurationMs = 4;
+    third.buildDurationMs = 4;
+
+    first.requestModelBuild();
+    second.requestModelBuild();
+    third.requestModelBuild();
+
+    runFrame();
+    assertEquals(Arrays.asList("first", "second"), builds);
+
+    runFrame();
+    assertEquals(Arrays.asList("first", "second", "third"), builds);
+  }
+
+  @Test
+  public void idleBuildsWaitForNextFrameOnceBudgetIsUsed() throws InterruptedException {
+    globalScheduler.setFrameBudgetMs(2);
+    RecordingController visible = createController("visible", true);
+    RecordingController hidden = createController("hidden", false);
+    visible.buildDurationMs = 4;
+
+    visible.requestModelBuild();
+    hidden.requestModelBuild();
+    runFrame();
+    globalScheduler.dispatchIdle();
+    assertEquals(Collections.singletonList("visible"), builds);
+
+    Thread.sleep(FrameInterval.getNanos() / 1_000_000 + 1);
+    globalScheduler.dispatchIdle();
+    assertEquals(Arrays.asList("visible", "hidden"), builds);
+  }
+
+  @Test
+  public void hiddenBuildsDoNotPostFrames() {
+    RecordingController hidden = createController("hidden", false);
+    int postedTaskCount = Robolectric.getForegroundThreadScheduler().size();
+
+    hidden.requestModelBuild();
+
+    assertEquals(postedTaskCount, Robolectric.getForegroundThreadScheduler().size());
+    ShadowLooper.runUiThreadTasks();
+    assertEquals(0, builds.size());
+  }
+
+  @Test
+  public void hiddenBuildRunsInFrameOnceDrawnOnScreen() {
+    RecordingController controller = createController("controller", false);
+    controller.requestModelBuild();
+
+    controller.recyclerView.visible = true;
+    controller.recyclerView.getViewTreeObserver().dispatchOnPreDraw();
+    runFrame();
+
+    assertEquals(Collections.singletonList("controller"), builds);
+  }
+
+  @Test
+  public void cancelledBuildIsNotRun() {
+    RecordingController hidden = createController("hidden", false);
+
+    hidden.requestModelBuild();
+    hidden.cancelPendingModelBuild();
+    globalScheduler.dispatchIdle();
+
+    assertEquals(0, builds.size());
+  }
+
+  /** Run the next posted task, which is the frame callback. */
+  private static void runFrame() {
+    Robolectric.getForegroundThreadScheduler().runOneTask();
+  }
+
+  private RecordingController createController(String name, boolean visible) {
+    RecordingController controller = new RecordingController(name);
+    controller.setModelBuildScheduler(globalScheduler.newScheduler());
+    controller.recyclerView.visible = visible;
+    controller.recyclerView.setAdapter(controller.getAdapter());
+
+    // The first build is run immediately instead of being scheduled
+    controller.requestModelBuild();
+    builds.clear();
+    return controller;
+  }
+
+  private class RecordingController extends EpoxyController {
+    final String name;
+    final VisibilityRecyclerView recyclerView = new VisibilityRecyclerView();
+    int buildDurationMs;
+
+    RecordingController(String name) {
+      this.name = name;
+    }
+
+    @Override
+    protected void buildModels() {
+      builds.add(name);
+      if (buildDurationMs > 0) {
+        try {
+          Thread.sleep(buildDurationMs);
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    }
+  }
+
+  /** Reports whether it is visible without needing to be laid out in a window. */
+  private static class VisibilityRecyclerView extends RecyclerView {
+    boolean visible;
+
+    VisibilityRecyclerView() {
+      super(RuntimeEnvironment.application);
+    }
+
+    @Override
+    public boolean isShown() {
+      return visible;
+    }
+
+    @Override
+    public int getWindowVisibility() {
+      return visible ? VISIBLE : GONE;
+    }
+
+    @Override
+    public boolean getGlobalVisibleRect(Rect r, Point globalOffset) {
+      return visible;
+    }
+  }
+}
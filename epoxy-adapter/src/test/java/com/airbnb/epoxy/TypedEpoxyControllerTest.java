@@ -3,8 +3,12 @@ package com.airbnb.epoxy;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
 
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 @Config(sdk = 21, manifest = TestRunner.MANIFEST_PATH)
@@ -24,4 +28,125 @@ public class TypedEpoxyControllerTest {
 
     verify(controller).buildModels("data");
   }
-}
\ No newline at end of file
+
+  @Test
+  public void dataIsAlwaysRebuiltByDefault() {
+    TypedEpoxyController<String> controller = spy(new TypedEpoxyController<String>() {
+      @Override
+      protected void buildModels(String data) {
+
+      }
+    });
+
+    controller.setData("data");
+    controller.setData("data");
+
+    verify(controller, times(2)).buildModels("data");
+    assertEquals(0, controller.getSkippedModelBuildCount());
+  }
+
+  @Test
+  public void equalDataIsSkipped() {
+    TypedEpoxyController<String> controller = spy(new TypedEpoxyController<String>() {
+      @Override
+      protected void buildModels(String data) {
+
+      }
+    });
+    controller.setDataEqualityPolicy(DataEqualityPolicy.EQUALS);
+
+    controller.setData("data");
+    controller.setData(new String("data"));
+    controller.setData("new data");
+
+    verify(controller).buildModels("data");
+    verify(controller).buildModels("new data");
+    assertEquals(1, controller.getSkippedModelBuildCount());
+  }
+
+  @Test
+  public void firstDataIsNotSkipped() {
+    TypedEpoxyController<String> controller = spy(new TypedEpoxyController<String>() {
+      @Override
+      protected void buildModels(String data) {
+
+      }
+    });
+    controller.setDataEqualityPolicy(DataEqualityPolicy.IDENTITY);
+
+    controller.setData(null);
+    controller.setData(null);
+
+    verify(controller).buildModels(null);
+    assertEquals(1, controller.getSkippedModelBuildCount());
+  }
+
+  @Test
+  public void dataSetDuringIncrementalDiffIsBuiltAfterDiff() {
+    ShadowLooper.pauseMainLooper();
+    try {
+      TypedEpoxyController<Integer> controller = spy(new CountController());
+      // A tiny budget so that the diff has to be continued several times
+      controller.setDiffTimeBudgetMs(0.001f);
+
+      controller.setData(2000);
+      controller.setData(2001);
+      // Runs the build, which starts the diff
+      ShadowLooper.runMainLooperOneTask();
+      assertEquals(2000, controller.getAdapter().getItemCount());
+
+      controller.setData(2002);
+      ShadowLooper.runUiThreadTasks();
+
+      verify(controller).buildModels(2002);
+      assertEquals(2002, controller.getAdapter().getItemCount());
+    } finally {
+      ShadowLooper.unPauseMainLooper();
+    }
+  }
+
+  @Test
+  public void dataSetDuringDragSessionIsBuiltWhenSessionEnds() {
+    TypedEpoxyController<Integer> controller = spy(new CountController());
+    controller.setData(3);
+
+    controller.startDragSession();
+    controller.moveModel(0, 2);
+    controller.setData(4);
+    verify(controller, never()).buildModels(4);
+
+    controller.endDragSession();
+
+    verify(controller).buildModels(4);
+    assertEquals(4, controller.getAdapter().getItemCount());
+  }
+
+  @Test
+  public void multipleDataArgumentsAreCompared() {
+    Typed2EpoxyController<String, Integer> controller =
+        spy(new Typed2EpoxyController<String, Integer>() {
+          @Override
+          protected void buildModels(String data1, Integer data2) {
+
+          }
+        });
+    controller.setDataEqualityPolicy(DataEqualityPolicy.EQUALS);
+
+    controller.setData("data", 1);
+    controller.setData("data", 1);
+    controller.setData("data", 2);
+
+    verify(controller).buildModels("data", 1);
+    verify(controller).buildModels("data", 2);
+    assertEquals(1, controller.getSkippedModelBuildCount());
+  }
+
+  static class CountController extends TypedEpoxyController<Integer> {
+    @Override
+    protected void buildModels(Integer count) {
+      for (int i = 0; i < count; i++) {
+        new TestModel(i).addTo(this);
+      }
+    }
+  }
+}
@@ -0,0 +1,178 @@
+package com.airbnb.epoxy;
+
+import android.os.Parcel;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import com.airbnb.epoxy.ViewHolderState.ViewState;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@Config(sdk = 21, manifest = TestRunner.MANIFEST_PATH)
+@RunWith(TestRunner.class)
+public class ViewHolderStateTest {
+
+  private final SimpleEpoxyController controller = new SimpleEpoxyController();
+  private final EpoxyControllerAdapter adapter = controller.getAdapter();
+
+  @Test
+  public void stateIsSavedWhenViewIsRecycled() {
+    controller.setModels(createModels(3));
+    bindAndRecycle(0);
+    bindAndRecycle(1);
+
+    assertEquals(2, adapter.getSavedViewStateCount());
+    assertTrue(adapter.getSavedViewStateSizeBytes() > 0);
+  }
+
+  @Test
+  public void stateIsRemovedWhenModelIsRemoved() {
+    List<StatefulModel> models = createModels(3);
+    controller.setModels(models);
+    bindAndRecycle(0);
+    bindAndRecycle(1);
+
+    controller.setModels(models.subList(1, 3));
+
+    assertEquals(1, adapter.getSavedViewStateCount());
+    assertNull(adapter.getViewHolderState().get(models.get(0).id()));
+    assertNotNull(adapter.getViewHolderState().get(models.get(1).id()));
+  }
+
+  @Test
+  public void stateIsNotSavedForRemovedModelWhenRecycled() {
+    List<StatefulModel> models = createModels(2);
+    controller.setModels(models);
+    EpoxyViewHolder holder = bind(0);
+
+    controller.setModels(models.subList(1, 2));
+    adapter.onViewRecycled(holder);
+
+    assertEquals(0, adapter.getSavedViewStateCount());
+  }
+
+  @Test
+  public void leastRecentlyUsedStateIsEvictedOverCountLimit() {
+    List<StatefulModel> models = createModels(3);
+    controller.setModels(models);
+    adapter.setSavedViewStateLimits(2, Long.MAX_VALUE);
+
+    bindAndRecycle(0);
+    bindAndRecycle(1);
+    // Restoring the first state marks it as recently used
+    bindAndRecycle(0);
+    bindAndRecycle(2);
+
+    assertEquals(2, adapter.getSavedViewStateCount());
+    assertNotNull(adapter.getViewHolderState().get(models.get(0).id()));
+    assertNull(adapter.getViewHolderState().get(models.get(1).id()));
+    assertNotNull(adapter.getViewHolderState().get(models.get(2).id()));
+  }
+
+  @Test
+  public void statesAreEvictedOverSizeLimit() {
+    controller.setModels(createModels(3));
+    bindAndRecycle(0);
+    long sizeOfOneState = adapter.getSavedViewStateSizeBytes();
+
+    adapter.setSavedViewStateLimits(Integer.MAX_VALUE, sizeOfOneState);
+    bindAndRecycle(1);
+    bindAndRecycle(2);
+
+    assertEquals(1, adapter.getSavedViewStateCount());
+    assertFalse(adapter.getSavedViewStateSizeBytes() > sizeOfOneState);
+  }
+
+  @Test
+  public void estimatedStatesAreParceledFromTheirEstimate() {
+    List<StatefulModel> models = createModels(2);
+    controller.setModels(models);
+    adapter.setSavedViewStateLimits(Integer.MAX_VALUE, 1_000_000);
+    bindAndRecycle(0);
+    bindAndRecycle(1);
+
+    ViewHolderState state = adapter.getViewHolderState();
+    ViewState firstState = state.get(models.get(0).id());
+    assertNotNull(firstState.marshalledBytes);
+
+    Parcel parcel = Parcel.obtain();
+    try {
+      state.writeToParcel(parcel, 0);
+      parcel.setDataPosition(0);
+      ViewHolderState restoredState = ViewHolderState.CREATOR.createFromParcel(parcel);
+
+      assertEquals(2, restoredState.size());
+      assertEquals(state.getSizeBytes(), restoredState.getSizeBytes());
+      ViewState restoredFirstState = restoredState.get(models.get(0).id());
+      assertEquals(firstState.size(), restoredFirstState.size());
+      assertEquals(firstState.keyAt(0), restoredFirstState.keyAt(0));
+    } finally {
+      parcel.recycle();
+    }
+  }
+
+  @Test
+  public void estimateIsDiscardedWhenStateIsSavedAgain() {
+    controller.setModels(createModels(1));
+    adapter.setSavedViewStateLimits(Integer.MAX_VALUE, 1_000_000);
+    bindAndRecycle(0);
+    ViewState state = adapter.getViewHolderState().valueAt(0);
+    byte[] firstEstimate = state.marshalledBytes;
+
+    bindAndRecycle(0);
+
+    assertNotNull(state.marshalledBytes);
+    assertNotSame(firstEstimate, state.marshalledBytes);
+  }
+
+  private EpoxyViewHolder bind(int position) {
+    ViewGroup parent = new FrameLayout(RuntimeEnvironment.application);
+    EpoxyViewHolder holder =
+        adapter.createViewHolder(parent, adapter.getItemViewType(position));
+    adapter.bindViewHolder(holder, position);
+    return holder;
+  }
+
+  private void bindAndRecycle(int position) {
+    adapter.onViewRecycled(bind(position));
+  }
+
+  private static List<StatefulModel> createModels(int count) {
+    List<StatefulModel> models = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      models.add(new StatefulModel(i + 1));
+    }
+    return models;
+  }
+
+  static class StatefulModel extends TestModel {
+
+    StatefulModel(long id) {
+      super(id);
+    }
+
+    @Override
+    protected View buildView(ViewGroup parent) {
+      return new View(parent.getContext());
+    }
+
+    @Override
+    public boolean shouldSaveViewState() {
+      return true;
+    }
+  }
+}
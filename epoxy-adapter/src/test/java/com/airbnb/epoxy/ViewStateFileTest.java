@@ -0,0 +1,138 @@
+package com.airbnb.epoxy;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/** This doesn't depend on Android, so it runs as a plain JVM test without Robolectric. */
+public class ViewStateFileTest {
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void recordsRoundTrip() throws IOException {
+    File directory = temporaryFolder.getRoot();
+    long[] ids = {-3, 7, Long.MAX_VALUE};
+    byte[][] records = {{1, 2, 3}, {}, {4, 5}};
+
+    ViewStateFile file = writeAndRead(directory, ids, records);
+
+    assertEquals(3, file.size());
+    assertEquals(5, file.getSizeBytes());
+    assertArrayEquals(ids, file.getIds());
+    for (int i = 0; i < ids.length; i++) {
+      assertTrue(file.contains(ids[i]));
+      assertArrayEquals(records[i], file.get(ids[i]));
+    }
+  }
+
+  @Test
+  public void takeRemovesRecord() throws IOException {
+    File directory = temporaryFolder.getRoot();
+    ViewStateFile file = writeAndRead(directory, new long[]{1, 2}, new byte[][]{{1}, {2, 2}});
+
+    assertArrayEquals(new byte[]{2, 2}, file.take(2));
+    assertNull(file.take(2));
+    assertFalse(file.contains(2));
+    assertArrayEquals(new long[]{1}, file.getIds());
+    assertEquals(1, file.getSizeBytes());
+
+    file.remove(1);
+    assertEquals(0, file.size());
+    assertEquals(0, file.getSizeBytes());
+  }
+
+  @Test
+  public void fileCanBeReadAgain() throws IOException {
+    File directory = temporaryFolder.getRoot();
+    String token = ViewStateFile.newToken();
+    ViewStateFile.write(directory, token, new long[]{1}, new byte[][]{{1}});
+    ViewStateFile.read(directory, token).take(1);
+
+    ViewStateFile file = ViewStateFile.read(directory, token);
+    assertArrayEquals(new byte[]{1}, file.get(1));
+  }
+
+  @Test
+  public void writingSameTokenReplacesFile() throws IOException {
+    File directory = temporaryFolder.getRoot();
+    String token = ViewStateFile.newToken();
+    ViewStateFile.write(directory, token, new long[]{1}, new byte[][]{{1}});
+    ViewStateFile firstFile = ViewStateFile.read(directory, token);
+
+    ViewStateFile.write(directory, token, new long[]{2}, new byte[][]{{2, 2}});
+    ViewStateFile secondFile = ViewStateFile.read(directory, token);
+
+    assertArrayEquals(new long[]{2}, secondFile.getIds());
+    assertArrayEquals(new byte[]{2, 2}, secondFile.get(2));
+    // Records that were already mapped are not affected
+    assertArrayEquals(new byte[]{1}, firstFile.get(1));
+    assertEquals(1, directory.list().length);
+  }
+
+  @Test
+  public void deleteRemovesFile() throws IOException {
+    File directory = temporaryFolder.getRoot();
+    String token = ViewStateFile.newToken();
+    ViewStateFile.write(directory, token, new long[]{1}, new byte[][]{{1}});
+    ViewStateFile.delete(directory, token);
+
+    // Writes and deletes run in order, so once this is read the delete has finished
+    writeAndRead(directory, new long[]{2}, new byte[][]{{2}});
+
+    assertFalse(new File(directory, token).exists());
+  }
+
+  @Test
+  public void staleFilesAreDeletedOnFirstUse() throws IOException {
+    File directory = temporaryFolder.getRoot();
+    long staleTime = System.currentTimeMillis() - ViewStateFile.STALE_FILE_AGE_MILLIS - 1000;
+
+    File staleFile = new File(directory, ViewStateFile.newToken());
+    assertTrue(staleFile.createNewFile());
+    assertTrue(staleFile.setLastModified(staleTime));
+    File recentFile = new File(directory, ViewStateFile.newToken());
+    assertTrue(recentFile.createNewFile());
+    File otherFile = temporaryFolder.newFile("other");
+    assertTrue(otherFile.setLastModified(staleTime));
+
+    // The sweep runs before the write, so it has finished once the file is read
+    writeAndRead(directory, new long[]{1}, new byte[][]{{1}});
+
+    assertFalse(staleFile.exists());
+    assertTrue(recentFile.exists());
+    assertTrue(otherFile.exists());
+  }
+
+  @Test(expected = IOException.class)
+  public void missingFileThrows() throws IOException {
+    ViewStateFile.read(temporaryFolder.getRoot(), "missing");
+  }
+
+  @Test(expected = IOException.class)
+  public void invalidFileThrows() throws IOException {
+    File file = temporaryFolder.newFile("invalid");
+    FileOutputStream outputStream = new FileOutputStream(file);
+    outputStream.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+    outputStream.close();
+
+    ViewStateFile.read(temporaryFolder.getRoot(), "invalid");
+  }
+
+  private static ViewStateFile writeAndRead(File directory, long[] ids, byte[][] records)
+      throws IOException {
+    String token = ViewStateFile.newToken();
+    ViewStateFile.write(directory, token, ids, records);
+    return ViewStateFile.read(directory, token);
+  }
+}
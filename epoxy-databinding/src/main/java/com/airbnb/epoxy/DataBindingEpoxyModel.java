@@ -30,13 +30,23 @@ import java.util.List;
  * EpoxyModel)} for you. This will do all binding for you, and also only bind variables that change
  * if you update your model (Note: The change optimization only works when used with {@link
  * EpoxyController}).
+ * <p>
+ * Views for this model can be inflated ahead of time on a background thread with a {@link
+ * DataBindingPreinflater}.
  */
 public abstract class DataBindingEpoxyModel extends EpoxyModelWithHolder<DataBindingHolder> {
 
   @Override
   protected View buildView(ViewGroup parent) {
-    LayoutInflater layoutInflater = LayoutInflater.from(parent.getContext());
-    ViewDataBinding binding = DataBindingUtil.inflate(layoutInflater, getViewType(), parent, false);
+    ViewDataBinding binding;
+    View preinflatedView = DataBindingPreinflater.takePreinflatedView(parent, getViewType());
+    if (preinflatedView != null) {
+      binding = DataBindingUtil.bind(preinflatedView);
+    } else {
+      LayoutInflater layoutInflater = LayoutInflater.from(parent.getContext());
+      binding = DataBindingUtil.inflate(layoutInflater, getViewType(), parent, false);
+    }
+
     View view = binding.getRoot();
     view.setTag(binding);
     return view;
@@ -0,0 +1,300 @@
+package com.airbnb.epoxy;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.LayoutRes;
+import android.support.annotation.MainThread;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.support.v7.widget.RecyclerView;
+import android.util.AttributeSet;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.View.OnAttachStateChangeListener;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import com.airbnb.epoxy.databinding.R;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inflates the views of {@link DataBindingEpoxyModel}s on a background thread ahead of time, so
+ * that the first views of a layout don't have to be inflated on the main thread when they are
+ * needed. Inflated views are pooled by layout, and {@link DataBindingEpoxyModel} takes a view from
+ * the pool when the RecyclerView creates a view holder for it, if one is available.
+ * <p>
+ * Only the views are inflated in the background. The {@link android.databinding.ViewDataBinding}
+ * for a view is created on the main thread when the view is used, since a binding schedules its
+ * updates on the thread that it was created on.
+ * <p>
+ * Views are inflated without the factories that are set on the context's inflater, since factories
+ * such as AppCompat's are not safe to use off the main thread. This means that AppCompat does not
+ * substitute its widgets for framework widgets in preinflated views, such as an {@code
+ * AppCompatTextView} for a {@code TextView}, so those views lose AppCompat's tinting and other
+ * backported features. Don't preinflate layouts that rely on this, or use the AppCompat widgets in
+ * those layouts directly.
+ * <p>
+ * Use {@link #attach(RecyclerView)} to get the preinflater for a RecyclerView, then call {@link
+ * #preinflate(int, int)} with the layouts that are about to be shown. Pending inflations and pooled
+ * views are discarded when the RecyclerView is detached from its window, or when {@link #cancel()}
+ * is called. All methods must be called on the main thread.
+ */
+public class DataBindingPreinflater {
+  private static final int DEFAULT_MAX_POOLED_VIEWS_PER_LAYOUT = 5;
+
+  private static Handler backgroundHandler;
+
+  private final RecyclerView recyclerView;
+  private final LayoutInflater layoutInflater;
+  /**
+   * The parent that views are inflated against, so their layout params are read from their layout
+   * without calling into the RecyclerView or its LayoutManager off the main thread. Only used on
+   * the background thread.
+   */
+  @Nullable private FrameLayout inflateParent;
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private final SparseArray<ArrayDeque<View>> pooledViews = new SparseArray<>();
+  private final SparseIntArray pendingCounts = new SparseIntArray();
+  private final List<InflateTask> pendingTasks = new ArrayList<>();
+  private int maxPooledViewsPerLayout = DEFAULT_MAX_POOLED_VIEWS_PER_LAYOUT;
+
+  private DataBindingPreinflater(RecyclerView recyclerView) {
+    this.recyclerView = recyclerView;
+    // Inflaters aren't thread safe, so the background thread uses its own. A clone would share the
+    // factories of the context's inflater, which aren't safe to use off the main thread.
+    layoutInflater = new BackgroundInflater(recyclerView.getContext());
+
+    recyclerView.addOnAttachStateChangeListener(new OnAttachStateChangeListener() {
+      @Override
+      public void onViewAttachedToWindow(View view) {
+
+      }
+
+      @Override
+      public void onViewDetachedFromWindow(View view) {
+        cancel();
+      }
+    });
+  }
+
+  /** Get the preinflater for the given RecyclerView, creating it if needed. */
+  @MainThread
+  public static DataBindingPreinflater attach(RecyclerView recyclerView) {
+    DataBindingPreinflater preinflater = getPreinflater(recyclerView);
+    if (preinflater == null) {
+      preinflater = new DataBindingPreinflater(recyclerView);
+      recyclerView.setTag(R.id.epoxy_data_binding_preinflater, preinflater);
+    }
+    return preinflater;
+  }
+
+  @Nullable
+  private static DataBindingPreinflater getPreinflater(View view) {
+    return (DataBindingPreinflater) view.getTag(R.id.epoxy_data_binding_preinflater);
+  }
+
+  /**
+   * Set the most views of each layout that may be pooled, including views that are still being
+   * inflated. Views that are already pooled beyond a lower limit are kept. The default is 5.
+   */
+  @MainThread
+  public DataBindingPreinflater setMaxPooledViewsPerLayout(int maxViews) {
+    if (maxViews < 0) {
+      throw new IllegalArgumentException("Max views cannot be negative: " + maxViews);
+    }
+
+    maxPooledViewsPerLayout = maxViews;
+    return this;
+  }
+
+  /**
+   * Inflate views of the given data binding layout in the background, up to the pooling limit for
+   * the layout.
+   */
+  @MainThread
+  public void preinflate(@LayoutRes int layoutRes, int count) {
+    int available = maxPooledViewsPerLayout - getPooledCount(layoutRes)
+        - pendingCounts.get(layoutRes);
+    int toInflate = Math.min(count, available);
+
+    for (int i = 0; i < toInflate; i++) {
+      InflateTask task = new InflateTask(layoutRes);
+      pendingTasks.add(task);
+      getBackgroundHandler().post(task);
+    }
+
+    if (toInflate > 0) {
+      pendingCounts.put(layoutRes, pendingCounts.get(layoutRes) + toInflate);
+    }
+  }
+
+  /** Discard all pooled views and stop any inflations that haven't finished. */
+  @MainThread
+  public void cancel() {
+    for (InflateTask task : pendingTasks) {
+      task.cancelled = true;
+      getBackgroundHandler().removeCallbacks(task);
+    }
+
+    pendingTasks.clear();
+    pendingCounts.clear();
+    pooledViews.clear();
+  }
+
+  private int getPooledCount(@LayoutRes int layoutRes) {
+    ArrayDeque<View> views = pooledViews.get(layoutRes);
+    return views != null ? views.size() : 0;
+  }
+
+  /**
+   * Take a preinflated view of the given layout for the parent, if the parent has a preinflater
+   * with a view available.
+   */
+  @Nullable
+  static View takePreinflatedView(ViewGroup parent, @LayoutRes int layoutRes) {
+    DataBindingPreinflater preinflater = getPreinflater(parent);
+    if (preinflater == null) {
+      return null;
+    }
+
+    ArrayDeque<View> views = preinflater.pooledViews.get(layoutRes);
+    View view = views != null ? views.poll() : null;
+    if (view != null) {
+      preinflater.setRecyclerViewLayoutParams(view);
+    }
+    return view;
+  }
+
+  /**
+   * Replace the layout params that the view was inflated with by the params the RecyclerView's
+   * LayoutManager generates from them, as it would have if the view was inflated against the
+   * RecyclerView.
+   */
+  private void setRecyclerViewLayoutParams(View view) {
+    RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+    ViewGroup.LayoutParams layoutParams = view.getLayoutParams();
+    if (layoutManager != null && layoutParams != null) {
+      view.setLayoutParams(layoutManager.generateLayoutParams(layoutParams));
+    }
+  }
+
+  private void onInflated(InflateTask task, @Nullable View view) {
+    if (task.cancelled) {
+      return;
+    }
+
+    pendingTasks.remove(task);
+    pendingCounts.put(task.layoutRes, pendingCounts.get(task.layoutRes) - 1);
+
+    if (view == null) {
+      // Inflation failed, so the view will be inflated on the main thread when needed
+      return;
+    }
+
+    ArrayDeque<View> views = pooledViews.get(task.layoutRes);
+    if (views == null) {
+      views = new ArrayDeque<>();
+      pooledViews.put(task.layoutRes, views);
+    }
+    views.add(view);
+  }
+
+  /** Replace the handler that views are inflated on, or pass null to use the default thread. */
+  @VisibleForTesting
+  static synchronized void setBackgroundHandler(@Nullable Handler handler) {
+    backgroundHandler = handler;
+  }
+
+  private static synchronized Handler getBackgroundHandler() {
+    if (backgroundHandler == null) {
+      // Some views create a Handler when they are constructed, so the thread needs a looper
+      HandlerThread thread =
+          new HandlerThread("epoxy-data-binding-inflater", Process.THREAD_PRIORITY_BACKGROUND);
+      thread.start();
+      backgroundHandler = new Handler(thread.getLooper());
+    }
+    return backgroundHandler;
+  }
+
+  private class InflateTask implements Runnable {
+    @LayoutRes final int layoutRes;
+    volatile boolean cancelled;
+
+    InflateTask(@LayoutRes int layoutRes) {
+      this.layoutRes = layoutRes;
+    }
+
+    @Override
+    public void run() {
+      if (cancelled) {
+        return;
+      }
+
+      View inflatedView;
+      try {
+        if (inflateParent == null) {
+          inflateParent = new FrameLayout(recyclerView.getContext());
+        }
+        // The parent is only used to generate layout params, and the view is not attached
+        inflatedView = layoutInflater.inflate(layoutRes, inflateParent, false);
+      } catch (RuntimeException e) {
+        // Some views can only be created on the main thread
+        inflatedView = null;
+      }
+
+      final View view = inflatedView;
+      mainHandler.post(new Runnable() {
+        @Override
+        public void run() {
+          onInflated(InflateTask.this, view);
+        }
+      });
+    }
+  }
+
+  /**
+   * An inflater without any factories, which creates views by class name the way the framework's
+   * default inflater does.
+   */
+  private static class BackgroundInflater extends LayoutInflater {
+    private static final String[] CLASS_PREFIXES = {
+        "android.widget.",
+        "android.webkit.",
+        "android.app."
+    };
+
+    BackgroundInflater(Context context) {
+      super(context);
+    }
+
+    @Override
+    public LayoutInflater cloneInContext(Context newContext) {
+      return new BackgroundInflater(newContext);
+    }
+
+    @Override
+    protected View onCreateView(String name, AttributeSet attrs) throws ClassNotFoundException {
+      for (String prefix : CLASS_PREFIXES) {
+        try {
+          View view = createView(name, prefix, attrs);
+          if (view != null) {
+            return view;
+          }
+        } catch (ClassNotFoundException e) {
+          // Try the next prefix
+        }
+      }
+
+      // Views such as View and SurfaceView are in android.view, which this falls back to
+      return super.onCreateView(name, attrs);
+    }
+  }
+}
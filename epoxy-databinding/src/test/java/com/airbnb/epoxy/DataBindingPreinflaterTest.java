@@ -0,0 +1,128 @@
+package com.airbnb.epoxy;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@Config(sdk = 21, manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class DataBindingPreinflaterTest {
+  private static final int LAYOUT = android.R.layout.simple_list_item_1;
+
+  private final RecyclerView recyclerView = new RecyclerView(RuntimeEnvironment.application);
+  private DataBindingPreinflater preinflater;
+
+  @Before
+  public void setup() {
+    // Inflations are run on the paused main looper so the test controls when they happen
+    ShadowLooper.pauseMainLooper();
+    DataBindingPreinflater.setBackgroundHandler(new Handler(Looper.getMainLooper()));
+    recyclerView.setLayoutManager(new LinearLayoutManager(RuntimeEnvironment.application));
+    preinflater = DataBindingPreinflater.attach(recyclerView);
+  }
+
+  @After
+  public void tearDown() {
+    DataBindingPreinflater.setBackgroundHandler(null);
+    ShadowLooper.unPauseMainLooper();
+  }
+
+  @Test
+  public void attachReturnsTheSamePreinflater() {
+    assertSame(preinflater, DataBindingPreinflater.attach(recyclerView));
+  }
+
+  @Test
+  public void viewsAreHandedOutOnceInflated() {
+    preinflater.preinflate(LAYOUT, 2);
+    assertNull(take());
+
+    ShadowLooper.runUiThreadTasks();
+
+    assertNotNull(take());
+    assertNotNull(take());
+    assertNull(take());
+  }
+
+  @Test
+  public void viewsArePooledUpToLimit() {
+    preinflater.setMaxPooledViewsPerLayout(2);
+    preinflater.preinflate(LAYOUT, 5);
+    ShadowLooper.runUiThreadTasks();
+
+    assertNotNull(take());
+    assertNotNull(take());
+    assertNull(take());
+  }
+
+  @Test
+  public void pendingInflationsCountTowardLimit() {
+    preinflater.setMaxPooledViewsPerLayout(3);
+    preinflater.preinflate(LAYOUT, 2);
+    preinflater.preinflate(LAYOUT, 2);
+    ShadowLooper.runUiThreadTasks();
+
+    // Taking a view makes room for another
+    assertNotNull(take());
+    preinflater.preinflate(LAYOUT, 5);
+    ShadowLooper.runUiThreadTasks();
+
+    assertNotNull(take());
+    assertNotNull(take());
+    assertNotNull(take());
+    assertNull(take());
+  }
+
+  @Test
+  public void handedOutViewHasRecyclerViewLayoutParams() {
+    preinflater.preinflate(LAYOUT, 1);
+    ShadowLooper.runUiThreadTasks();
+
+    View view = take();
+
+    assertNotNull(view);
+    assertNull(view.getParent());
+    assertTrue(view.getLayoutParams() instanceof RecyclerView.LayoutParams);
+  }
+
+  @Test
+  public void cancelDiscardsPendingAndPooledViews() {
+    preinflater.preinflate(LAYOUT, 1);
+    ShadowLooper.runUiThreadTasks();
+    preinflater.preinflate(LAYOUT, 1);
+
+    preinflater.cancel();
+    ShadowLooper.runUiThreadTasks();
+
+    assertNull(take());
+  }
+
+  @Test
+  public void noViewsForRecyclerViewWithoutPreinflater() {
+    preinflater.preinflate(LAYOUT, 1);
+    ShadowLooper.runUiThreadTasks();
+
+    RecyclerView otherRecyclerView = new RecyclerView(RuntimeEnvironment.application);
+    assertNull(DataBindingPreinflater.takePreinflatedView(otherRecyclerView, LAYOUT));
+  }
+
+  private View take() {
+    return DataBindingPreinflater.takePreinflatedView(recyclerView, LAYOUT);
+  }
+}
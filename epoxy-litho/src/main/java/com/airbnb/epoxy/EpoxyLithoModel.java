@@ -1,8 +1,10 @@
 package com.airbnb.epoxy;
 
 import android.os.Looper;
+import android.support.annotation.Nullable;
 import android.view.ViewGroup;
 
+import com.airbnb.epoxylitho.R;
 import com.facebook.litho.Component;
 import com.facebook.litho.ComponentContext;
 import com.facebook.litho.ComponentLifecycle;
@@ -19,6 +21,10 @@ public abstract class EpoxyLithoModel<T extends ComponentLifecycle>
     extends EpoxyModelWithView<LithoView> {
 
   private Component<T> component;
+  /** Set by {@link LithoLayoutPrecomputer} if this model's layout is computed ahead of binding. */
+  @Nullable private ComponentTree precomputedComponentTree;
+  /** Set by {@link LithoRecyclerViewHelper}, which mounts views as the RecyclerView scrolls. */
+  private boolean incrementalMountEnabled;
 
   protected abstract Component<T> buildComponent(ComponentContext context);
 
@@ -31,49 +37,127 @@ public abstract class EpoxyLithoModel<T extends ComponentLifecycle>
     return component;
   }
 
+  /**
+   * Release the component, so that it doesn't retain its context. This is done by {@link
+   * LithoRecyclerViewHelper} once the model is removed from the adapter.
+   */
   public void clearComponent() {
-    // TODO: (eli_hart 4/23/17) Do this at some point to avoid leaking the context?
     component = null;
   }
 
+  void setIncrementalMountEnabled(boolean incrementalMountEnabled) {
+    this.incrementalMountEnabled = incrementalMountEnabled;
+  }
+
+  boolean isIncrementalMountEnabled() {
+    return incrementalMountEnabled;
+  }
+
+  void setPrecomputedComponentTree(@Nullable ComponentTree componentTree) {
+    precomputedComponentTree = componentTree;
+  }
+
+  @Nullable
+  ComponentTree getPrecomputedComponentTree() {
+    return precomputedComponentTree;
+  }
+
   @Override
   public void bind(LithoView view) {
+    if (precomputedComponentTree != null) {
+      // The layout was already computed, so it only needs to be mounted
+      if (view.getComponentTree() != precomputedComponentTree) {
+        view.setComponentTree(precomputedComponentTree);
+      }
+      return;
+    }
+
     Component<T> component = getComponent(view.getComponentContext());
-    if (view.getComponentTree() == null) {
-      view.setComponentTree(ComponentTree.create(view.getComponentContext(), component)
+    ComponentTree viewComponentTree = getViewComponentTree(view);
+    ComponentTree previousViewComponentTree = null;
+    if (viewComponentTree != null
+        && viewComponentTree.isIncrementalMountEnabled() != incrementalMountEnabled) {
+      // The view was bound to a model with a different incremental mount setting, which can only
+      // be set when the tree is created
+      previousViewComponentTree = viewComponentTree;
+      viewComponentTree = null;
+    }
+
+    if (viewComponentTree == null) {
+      viewComponentTree = ComponentTree.create(view.getComponentContext(), component)
           .asyncStateUpdates(false) // does this need to be off?
           .layoutThreadLooper(Looper.getMainLooper())
-          .incrementalMount(
-              false) // this needs to be off for recyclerview to work. Should we manually
-          // incrementally mount views in a scroll listener?
+          // This is only enabled when a scroll listener incrementally mounts views
+          .incrementalMount(incrementalMountEnabled)
           .layoutDiffing(false) // should we use this?
-          .build());
+          .build();
+      view.setTag(R.id.epoxy_litho_view_component_tree, viewComponentTree);
+    }
+
+    if (view.getComponentTree() != viewComponentTree) {
+      // The view was showing a precomputed layout of another model, or a tree that was replaced
+      view.setComponentTree(viewComponentTree);
     }
     view.setComponent(component);
+
+    if (previousViewComponentTree != null) {
+      previousViewComponentTree.release();
+    }
+  }
+
+  /**
+   * The component tree that the view lays out non precomputed models with. Precomputed trees belong
+   * to their model, so they are never reused for another model.
+   */
+  @Nullable
+  private static ComponentTree getViewComponentTree(LithoView view) {
+    return (ComponentTree) view.getTag(R.id.epoxy_litho_view_component_tree);
   }
 
   @Override
   public void bind(LithoView view, List<Object> payloads) {
-    if (payloads.isEmpty()) {
+    if (payloads.isEmpty() || precomputedComponentTree != null) {
       bind(view);
     } else {
-      view.getComponentTree().setRoot(getComponent(view.getComponentContext()), true);
+      setRoot(view);
     }
   }
 
   @Override
   public void bind(LithoView view, EpoxyModel<?> previouslyBoundModel) {
-    view.getComponentTree().setRoot(getComponent(view.getComponentContext()), true);
+    if (precomputedComponentTree != null) {
+      bind(view);
+    } else {
+      setRoot(view);
+    }
+  }
+
+  private void setRoot(LithoView view) {
+    ComponentTree viewComponentTree = getViewComponentTree(view);
+    if (viewComponentTree == null || view.getComponentTree() != viewComponentTree
+        || viewComponentTree.isIncrementalMountEnabled() != incrementalMountEnabled) {
+      bind(view);
+      return;
+    }
+
+    viewComponentTree.setRoot(getComponent(view.getComponentContext()), true);
   }
 
   @Override
   public void onViewAttachedToWindow(LithoView view) {
-//    view.rebind(); ?????
+    if (incrementalMountEnabled) {
+      // Mount the content that was unmounted when the view was detached
+      view.performIncrementalMount();
+    }
   }
 
   @Override
   public void onViewDetachedFromWindow(LithoView view) {
-//    view.unbind(); ???
+    if (incrementalMountEnabled) {
+      // Free the mounted drawables and views while the row is off screen. Without incremental mount
+      // the content would not be mounted again until the view is laid out.
+      view.unmountAllItems();
+    }
   }
 
   @Override
@@ -0,0 +1,178 @@
+package com.airbnb.epoxy;
+
+import android.content.Context;
+import android.support.annotation.MainThread;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import com.airbnb.epoxy.EpoxyController.Interceptor;
+import com.facebook.litho.Component;
+import com.facebook.litho.ComponentContext;
+import com.facebook.litho.ComponentTree;
+import com.facebook.litho.SizeSpec;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the layouts of {@link EpoxyLithoModel}s on Litho's background layout thread as soon as
+ * models are built, so that binding a model only needs to mount a layout that is already computed.
+ * Without this each Litho model is laid out on the main thread when it is bound.
+ * <p>
+ * Add this to a controller with {@link EpoxyController#addInterceptor(Interceptor)}, and set the
+ * width that items are laid out at with {@link #setWidth(int)}, which is typically the width of the
+ * RecyclerView minus its padding. Layouts are not computed until a width is set.
+ * <p>
+ * A layout is kept for each model id, and is reused in later builds as long as the model with that
+ * id is equal to the model it was computed for. A model that changed gets a new layout, since the
+ * previous model is still shown until the changes are dispatched to the adapter and it must keep
+ * showing its own layout until then. Layouts that are no longer used are released when the next
+ * models are built, by which time the models that used them have been replaced in the adapter.
+ * Call {@link #release()} when the controller is no longer used.
+ */
+public class LithoLayoutPrecomputer implements Interceptor {
+
+  private final ComponentContext componentContext;
+  private final Map<Long, PrecomputedLayout> layoutsById = new HashMap<>();
+  /** Layouts of models that were changed or removed in the last build, to release next build. */
+  private final List<PrecomputedLayout> replacedLayouts = new ArrayList<>();
+  private int widthSpec = SizeSpec.makeSizeSpec(0, SizeSpec.UNSPECIFIED);
+  private final int heightSpec = SizeSpec.makeSizeSpec(0, SizeSpec.UNSPECIFIED);
+  private boolean hasWidth;
+
+  /**
+   * @param context The context that components are created and mounted with. This should be the
+   *                context of the RecyclerView the models are shown in.
+   */
+  public LithoLayoutPrecomputer(Context context) {
+    componentContext = new ComponentContext(context);
+  }
+
+  /**
+   * Set the width that layouts are computed for. Layouts that were already computed for a
+   * different width are computed again.
+   */
+  @MainThread
+  public LithoLayoutPrecomputer setWidth(int widthPx) {
+    int newWidthSpec = SizeSpec.makeSizeSpec(widthPx, SizeSpec.EXACTLY);
+    if (hasWidth && newWidthSpec == widthSpec) {
+      return this;
+    }
+
+    widthSpec = newWidthSpec;
+    hasWidth = true;
+
+    for (PrecomputedLayout layout : layoutsById.values()) {
+      layout.componentTree.setSizeSpecAsync(widthSpec, heightSpec);
+    }
+
+    return this;
+  }
+
+  @Override
+  public void intercept(List<EpoxyModel<?>> models) {
+    if (!hasWidth) {
+      return;
+    }
+
+    // The models from the build before the last one have been replaced in the adapter by now
+    releaseAll(replacedLayouts);
+
+    Map<Long, PrecomputedLayout> previousLayouts = new HashMap<>(layoutsById);
+    layoutsById.clear();
+
+    for (EpoxyModel<?> model : models) {
+      if (!(model instanceof EpoxyLithoModel)) {
+        continue;
+      }
+
+      EpoxyLithoModel<?> lithoModel = (EpoxyLithoModel<?>) model;
+      PrecomputedLayout layout = previousLayouts.remove(model.id());
+      if (layout != null && !layout.model.equals(lithoModel)) {
+        // The previous model keeps its tree until it is no longer shown
+        replacedLayouts.add(layout);
+        layout = null;
+      }
+
+      if (layout == null) {
+        layout = new PrecomputedLayout(lithoModel, createComponentTree(lithoModel));
+      } else {
+        layout.setModel(lithoModel);
+      }
+
+      layoutsById.put(model.id(), layout);
+      lithoModel.setPrecomputedComponentTree(layout.componentTree);
+    }
+
+    replacedLayouts.addAll(previousLayouts.values());
+  }
+
+  @VisibleForTesting
+  ComponentTree createComponentTree(EpoxyLithoModel<?> model) {
+    Component<?> component = model.getComponent(componentContext);
+    ComponentTree componentTree = ComponentTree.create(componentContext, component)
+        .incrementalMount(model.isIncrementalMountEnabled())
+        .build();
+    componentTree.setRootAndSizeSpecAsync(component, widthSpec, heightSpec);
+    return componentTree;
+  }
+
+  /** Release all computed layouts. Models that were already built will lay out when bound. */
+  @MainThread
+  public void release() {
+    releaseAll(layoutsById.values());
+    releaseAll(replacedLayouts);
+  }
+
+  private static void releaseAll(Collection<PrecomputedLayout> layouts) {
+    Iterator<PrecomputedLayout> iterator = layouts.iterator();
+    while (iterator.hasNext()) {
+      PrecomputedLayout layout = iterator.next();
+      layout.clearModels();
+      layout.componentTree.release();
+      iterator.remove();
+    }
+  }
+
+  private static class PrecomputedLayout {
+    final ComponentTree componentTree;
+    /** The model from the latest build that uses this layout. */
+    EpoxyLithoModel<?> model;
+    /**
+     * An equal model from the build before, which also uses this layout. It may still be in the
+     * adapter until the latest models are dispatched.
+     */
+    @Nullable EpoxyLithoModel<?> previousModel;
+
+    PrecomputedLayout(EpoxyLithoModel<?> model, ComponentTree componentTree) {
+      this.model = model;
+      this.componentTree = componentTree;
+    }
+
+    /** Use the layout for an equal model from a new build. */
+    void setModel(EpoxyLithoModel<?> newModel) {
+      if (newModel == model) {
+        return;
+      }
+
+      // The model from two builds ago has been replaced in the adapter by now
+      if (previousModel != null && previousModel != newModel) {
+        previousModel.setPrecomputedComponentTree(null);
+      }
+      previousModel = model;
+      model = newModel;
+    }
+
+    /** Stop the models from using this layout, so that it can be released. */
+    void clearModels() {
+      model.setPrecomputedComponentTree(null);
+      if (previousModel != null) {
+        previousModel.setPrecomputedComponentTree(null);
+      }
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package com.airbnb.epoxy;
+
+import android.support.annotation.MainThread;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+import com.airbnb.epoxy.EpoxyController.Interceptor;
+import com.facebook.litho.LithoView;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Manages the {@link EpoxyLithoModel}s of a controller that is shown in a RecyclerView, so that
+ * Litho rows only keep the content that is on screen mounted:
+ * <ul>
+ * <li>Incremental mount is enabled for each Litho model, and is driven by the RecyclerView's scroll
+ * events so that the parts of a tall row are mounted as they scroll into view.</li>
+ * <li>A row's content is unmounted when its view is detached from the window, and mounted again
+ * when it is reattached.</li>
+ * <li>After each model build, the components of Litho models that were removed from the adapter
+ * are released, so they don't hold on to their context.</li>
+ * </ul>
+ * Use {@link #install(EpoxyController, RecyclerView)} to set this up. If a {@link
+ * LithoLayoutPrecomputer} is also used, install this first so that the precomputed layouts are
+ * created with incremental mount enabled.
+ */
+public class LithoRecyclerViewHelper extends RecyclerView.OnScrollListener
+    implements Interceptor {
+
+  private final EpoxyController controller;
+
+  private LithoRecyclerViewHelper(EpoxyController controller) {
+    this.controller = controller;
+  }
+
+  /** Manage the Litho models of the given controller while it is shown in the RecyclerView. */
+  @MainThread
+  public static LithoRecyclerViewHelper install(EpoxyController controller,
+      RecyclerView recyclerView) {
+    LithoRecyclerViewHelper helper = new LithoRecyclerViewHelper(controller);
+    controller.addInterceptor(helper);
+    recyclerView.addOnScrollListener(helper);
+    return helper;
+  }
+
+  /** Stop managing the controller's models. */
+  @MainThread
+  public void uninstall(RecyclerView recyclerView) {
+    controller.removeInterceptor(this);
+    recyclerView.removeOnScrollListener(this);
+  }
+
+  @Override
+  public void intercept(List<EpoxyModel<?>> models) {
+    Set<EpoxyModel<?>> newModels =
+        Collections.newSetFromMap(new IdentityHashMap<EpoxyModel<?>, Boolean>(models.size()));
+
+    for (EpoxyModel<?> model : models) {
+      if (model instanceof EpoxyLithoModel) {
+        ((EpoxyLithoModel<?>) model).setIncrementalMountEnabled(true);
+        newModels.add(model);
+      }
+    }
+
+    // The adapter still has the previous models at this point. Models that are not in the new
+    // list won't be bound again. Views that show them keep their mounted content until the new
+    // models are bound.
+    for (EpoxyModel<?> previousModel : controller.getAdapter().getCopyOfModels()) {
+      if (previousModel instanceof EpoxyLithoModel && !newModels.contains(previousModel)) {
+        ((EpoxyLithoModel<?>) previousModel).clearComponent();
+      }
+    }
+  }
+
+  @Override
+  public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+    for (int i = 0; i < recyclerView.getChildCount(); i++) {
+      View child = recyclerView.getChildAt(i);
+      if (child instanceof LithoView) {
+        ((LithoView) child).performIncrementalMount();
+      }
+    }
+  }
+}
@@ -0,0 +1,180 @@
+package com.airbnb.epoxy;
+
+import com.facebook.litho.Component;
+import com.facebook.litho.ComponentContext;
+import com.facebook.litho.ComponentLifecycle;
+import com.facebook.litho.ComponentTree;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@Config(sdk = 21, manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class LithoLayoutPrecomputerTest {
+
+  private final TestPrecomputer precomputer = new TestPrecomputer();
+
+  @Test
+  public void equalModelReusesLayout() {
+    TestLithoModel first = new TestLithoModel(1, 1);
+    TestLithoModel second = new TestLithoModel(1, 1);
+
+    intercept(first);
+    ComponentTree tree = first.getPrecomputedComponentTree();
+    intercept(second);
+
+    assertNotNull(tree);
+    assertSame(tree, second.getPrecomputedComponentTree());
+    assertEquals(1, precomputer.createdTrees.size());
+    verify(tree, never()).release();
+  }
+
+  @Test
+  public void releaseClearsReusedLayoutFromCurrentModel() {
+    TestLithoModel first = new TestLithoModel(1, 1);
+    TestLithoModel second = new TestLithoModel(1, 1);
+    intercept(first);
+    intercept(second);
+    ComponentTree tree = second.getPrecomputedComponentTree();
+
+    precomputer.release();
+
+    verify(tree).release();
+    assertNull(first.getPrecomputedComponentTree());
+    assertNull(second.getPrecomputedComponentTree());
+  }
+
+  @Test
+  public void changedModelGetsNewLayout() {
+    TestLithoModel original = new TestLithoModel(1, 1);
+    TestLithoModel changed = new TestLithoModel(1, 2);
+    intercept(original);
+    ComponentTree originalTree = original.getPrecomputedComponentTree();
+
+    intercept(changed);
+
+    assertNotSame(originalTree, changed.getPrecomputedComponentTree());
+    // The original model may still be shown until the changes are dispatched
+    assertSame(originalTree, original.getPrecomputedComponentTree());
+    verify(originalTree, never()).release();
+
+    intercept(changed);
+
+    verify(originalTree).release();
+    assertNull(original.getPrecomputedComponentTree());
+    assertSame(precomputer.createdTrees.get(1), changed.getPrecomputedComponentTree());
+  }
+
+  @Test
+  public void replacingReusedLayoutClearsEveryModelUsingIt() {
+    TestLithoModel first = new TestLithoModel(1, 1);
+    TestLithoModel second = new TestLithoModel(1, 1);
+    TestLithoModel changed = new TestLithoModel(1, 2);
+    intercept(first);
+    intercept(second);
+    ComponentTree tree = second.getPrecomputedComponentTree();
+
+    intercept(changed);
+    intercept(changed);
+
+    verify(tree).release();
+    assertNull(first.getPrecomputedComponentTree());
+    assertNull(second.getPrecomputedComponentTree());
+  }
+
+  @Test
+  public void modelFromTwoBuildsAgoStopsUsingReusedLayout() {
+    TestLithoModel first = new TestLithoModel(1, 1);
+    TestLithoModel second = new TestLithoModel(1, 1);
+    TestLithoModel third = new TestLithoModel(1, 1);
+
+    intercept(first);
+    intercept(second);
+    intercept(third);
+
+    assertNull(first.getPrecomputedComponentTree());
+    assertNotNull(second.getPrecomputedComponentTree());
+    assertSame(second.getPrecomputedComponentTree(), third.getPrecomputedComponentTree());
+  }
+
+  @Test
+  public void removedModelLayoutIsReleasedNextBuild() {
+    TestLithoModel model = new TestLithoModel(1, 1);
+    intercept(model);
+    ComponentTree tree = model.getPrecomputedComponentTree();
+
+    intercept();
+    verify(tree, never()).release();
+
+    intercept();
+    verify(tree).release();
+    assertNull(model.getPrecomputedComponentTree());
+  }
+
+  private void intercept(EpoxyModel<?>... models) {
+    List<EpoxyModel<?>> modelList = new ArrayList<>();
+    Collections.addAll(modelList, models);
+    precomputer.intercept(modelList);
+  }
+
+  private static class TestPrecomputer extends LithoLayoutPrecomputer {
+    final List<ComponentTree> createdTrees = new ArrayList<>();
+
+    TestPrecomputer() {
+      super(RuntimeEnvironment.application);
+      setWidth(100);
+    }
+
+    @Override
+    ComponentTree createComponentTree(EpoxyLithoModel<?> model) {
+      ComponentTree tree = mock(ComponentTree.class);
+      createdTrees.add(tree);
+      return tree;
+    }
+  }
+
+  static class TestLithoModel extends EpoxyLithoModel<ComponentLifecycle> {
+    private final int value;
+
+    TestLithoModel(long id, int value) {
+      super();
+      id(id);
+      this.value = value;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected Component<ComponentLifecycle> buildComponent(ComponentContext context) {
+      return mock(Component.class);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof TestLithoModel) || !super.equals(o)) {
+        return false;
+      }
+      return value == ((TestLithoModel) o).value;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * super.hashCode() + value;
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package com.airbnb.epoxy;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+import com.airbnb.epoxy.LithoLayoutPrecomputerTest.TestLithoModel;
+import com.facebook.litho.Component;
+import com.facebook.litho.ComponentContext;
+import com.facebook.litho.LithoView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@Config(sdk = 21, manifest = Config.NONE)
+@RunWith(RobolectricTestRunner.class)
+public class LithoRecyclerViewHelperTest {
+
+  private final SimpleEpoxyController controller = new SimpleEpoxyController();
+  private final RecyclerView recyclerView = new RecyclerView(RuntimeEnvironment.application);
+  private final ComponentContext componentContext =
+      new ComponentContext(RuntimeEnvironment.application);
+  private LithoRecyclerViewHelper helper;
+
+  @Before
+  public void setup() {
+    helper = LithoRecyclerViewHelper.install(controller, recyclerView);
+  }
+
+  @Test
+  public void incrementalMountIsEnabledForLithoModels() {
+    TestLithoModel model = new TestLithoModel(1, 1);
+
+    controller.setModels(Collections.singletonList(model));
+
+    assertTrue(model.isIncrementalMountEnabled());
+  }
+
+  @Test
+  public void componentsOfRemovedModelsAreReleased() {
+    TestLithoModel kept = new TestLithoModel(1, 1);
+    TestLithoModel removed = new TestLithoModel(2, 1);
+    controller.setModels(Arrays.asList(kept, removed));
+    Component<?> keptComponent = kept.getComponent(componentContext);
+    Component<?> removedComponent = removed.getComponent(componentContext);
+
+    controller.setModels(Collections.singletonList(kept));
+
+    assertSame(keptComponent, kept.getComponent(componentContext));
+    // The component was cleared, so a new one is built
+    assertNotSame(removedComponent, removed.getComponent(componentContext));
+  }
+
+  @Test
+  public void componentsAreKeptAfterUninstall() {
+    TestLithoModel removed = new TestLithoModel(1, 1);
+    controller.setModels(Collections.singletonList(removed));
+    Component<?> component = removed.getComponent(componentContext);
+
+    helper.uninstall(recyclerView);
+    controller.setModels(Collections.<EpoxyModel<?>>emptyList());
+
+    assertSame(component, removed.getComponent(componentContext));
+  }
+
+  @Test
+  public void contentIsUnmountedOnDetachAndMountedOnAttach() {
+    TestLithoModel model = new TestLithoModel(1, 1);
+    controller.setModels(Collections.singletonList(model));
+    LithoView view = mock(LithoView.class);
+
+    model.onViewDetachedFromWindow(view);
+    verify(view).unmountAllItems();
+
+    model.onViewAttachedToWindow(view);
+    verify(view).performIncrementalMount();
+  }
+
+  @Test
+  public void contentIsNotUnmountedWithoutIncrementalMount() {
+    TestLithoModel model = new TestLithoModel(1, 1);
+    assertFalse(model.isIncrementalMountEnabled());
+    LithoView view = mock(LithoView.class);
+
+    model.onViewDetachedFromWindow(view);
+    model.onViewAttachedToWindow(view);
+
+    verify(view, never()).unmountAllItems();
+    verify(view, never()).performIncrementalMount();
+  }
+
+  @Test
+  public void scrollingMountsLithoChildren() {
+    RecyclerView scrolledRecyclerView = mock(RecyclerView.class);
+    LithoView lithoView = mock(LithoView.class);
+    View otherView = mock(View.class);
+    when(scrolledRecyclerView.getChildCount()).thenReturn(2);
+    when(scrolledRecyclerView.getChildAt(0)).thenReturn(lithoView);
+    when(scrolledRecyclerView.getChildAt(1)).thenReturn(otherView);
+
+    helper.onScrolled(scrolledRecyclerView, 0, 10);
+
+    verify(lithoView).performIncrementalMount();
+  }
+}
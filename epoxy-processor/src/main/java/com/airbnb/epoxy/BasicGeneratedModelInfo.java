@@ -32,6 +32,7 @@ import static com.airbnb.epoxy.Utils.getEpoxyObjectType;
     this.elementUtils = elementUtils;
     this.superClassName = ParameterizedTypeName.get(superClassElement.asType());
     this.superClassElement = superClassElement;
+    originatingElement = superClassElement;
     generatedClassName = buildGeneratedModelName(superClassElement);
 
     for (TypeParameterElement typeParameterElement : superClassElement.getTypeParameters()) {
@@ -27,6 +27,8 @@ class ConfigManager {
   static final String PROCESSOR_OPTION_REQUIRE_HASHCODE = "requireHashCodeInEpoxyModels";
   static final String PROCESSOR_OPTION_REQUIRE_ABSTRACT_MODELS = "requireAbstractEpoxyModels";
   static final String PROCESSOR_OPTION_IMPLICITLY_ADD_AUTO_MODELS = "implicitlyAddAutoModels";
+  static final String PROCESSOR_OPTION_GENERATE_LEAN_MODELS = "generateLeanEpoxyModels";
+  static final String PROCESSOR_OPTION_WRITE_TIMING_REPORT = "writeEpoxyTimingReport";
 
   private static final PackageConfigSettings
       DEFAULT_PACKAGE_CONFIG_SETTINGS = PackageConfigSettings.Companion.forDefaults();
@@ -37,6 +39,9 @@ class ConfigManager {
   private final boolean globalRequireHashCode;
   private final boolean globalRequireAbstractModels;
   private final boolean globalImplicitlyAddAutoModels;
+  private final boolean generateLeanModels;
+  @Nullable private final String kotlinExtensionsDirectory;
+  private final boolean writeTimingReport;
   private final Types typeUtils;
 
   ConfigManager(Map<String, String> options, Elements elementUtils, Types typeUtils) {
@@ -53,6 +58,10 @@ class ConfigManager {
     globalImplicitlyAddAutoModels =
         getBooleanOption(options, PROCESSOR_OPTION_IMPLICITLY_ADD_AUTO_MODELS,
             PackageEpoxyConfig.IMPLICITLY_ADD_AUTO_MODELS_DEFAULT);
+
+    generateLeanModels = getBooleanOption(options, PROCESSOR_OPTION_GENERATE_LEAN_MODELS, false);
+    kotlinExtensionsDirectory = getKotlinExtensionsDirectory(options);
+    writeTimingReport = getBooleanOption(options, PROCESSOR_OPTION_WRITE_TIMING_REPORT, false);
     this.typeUtils = typeUtils;
   }
 
@@ -66,6 +75,19 @@ class ConfigManager {
     return Boolean.valueOf(value);
   }
 
+  @Nullable
+  private static String getKotlinExtensionsDirectory(Map<String, String> options) {
+    String kaptGeneratedDirPath = options.get(EpoxyProcessor.KAPT_KOTLIN_GENERATED_OPTION_NAME);
+    if (kaptGeneratedDirPath == null) {
+      // If the option does not exist this is not being processed by kapt, so we don't need to
+      // generate kotlin extensions
+      return null;
+    }
+
+    // Need to change the path because of https://youtrack.jetbrains.com/issue/KT-19097
+    return kaptGeneratedDirPath.replace("kaptKotlin", "kapt");
+  }
+
   /**
    * If true, Epoxy models added to an EpoxyController will be
    * validated at run time to make sure they are properly used.
@@ -158,6 +180,61 @@ class ConfigManager {
     return validateModelUsage;
   }
 
+  /**
+   * If true, generated models leave out code that is only a convenience, to reduce the method count
+   * and class size of apps with many models. This omits the generated toString, and builder
+   * interfaces unless a model's Kotlin extension function needs one. It also omits most overrides
+   * of EpoxyModel methods that only exist to return the generated type for chaining. Only id(long),
+   * id(CharSequence), and layout are still overridden, since other setters are usually chained
+   * after them. Models that get a builder interface keep all of these overrides.
+   * <p>
+   * This changes the generated API, so it is not source compatible with code that chains a
+   * generated setter after one of the other id overloads, spanSizeOverride, show, or hide. That
+   * setter must be called first instead. Since the generated API should not differ between builds,
+   * enable this for every module and build type of an app, rather than only for release builds.
+   * This is false by default.
+   */
+  boolean shouldGenerateLeanModels() {
+    return generateLeanModels;
+  }
+
+  /**
+   * True if a builder interface should be generated for the model. Lean models only get one if
+   * Kotlin extension functions are generated and the model's extension uses the interface.
+   */
+  boolean shouldGenerateBuilderInterface(GeneratedModelInfo info) {
+    return !generateLeanModels
+        || (kotlinExtensionsDirectory != null
+        && KotlinModelBuilderExtensionWriterKt.extensionUsesBuilderInterface(info));
+  }
+
+  /**
+   * True if every EpoxyModel method that returns the model should be overridden to return the
+   * generated type instead.
+   */
+  boolean shouldOverrideAllBaseModelChainingMethods(GeneratedModelInfo info) {
+    // The builder interfaces are made from the generated methods, so they need these to be
+    // generated to keep the same methods
+    return shouldGenerateBuilderInterface(info);
+  }
+
+  /**
+   * The directory that Kotlin extension functions for the generated models are written to, or null
+   * if they are not generated because this is not being processed by kapt.
+   */
+  @Nullable
+  String getKotlinExtensionsDirectory() {
+    return kotlinExtensionsDirectory;
+  }
+
+  /**
+   * If true, the time spent in each phase of processing is recorded and written to a report. See
+   * {@link ProcessorTimer}. This is false by default.
+   */
+  boolean shouldWriteTimingReport() {
+    return writeTimingReport;
+  }
+
   PackageModelViewSettings getModelViewConfig(Element viewElement) {
     String packageName = elementUtils.getPackageOf(viewElement).getQualifiedName().toString();
     return getObjectFromPackageMap(modelViewNamingMap, packageName, null);
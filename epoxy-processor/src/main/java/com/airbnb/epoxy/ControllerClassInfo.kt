@@ -14,6 +14,8 @@ class ControllerClassInfo(
         val controllerClassElement: TypeElement) {
 
     val models: MutableSet<ControllerModelField> = HashSet()
+    /** The controller classes that declare the models, which the generated helper depends on. */
+    val originatingElements: MutableSet<TypeElement> = linkedSetOf(controllerClassElement)
     val generatedClassName: ClassName = getGeneratedClassName(controllerClassElement)
     val controllerClassType: TypeName = TypeName.get(controllerClassElement.asType())
 
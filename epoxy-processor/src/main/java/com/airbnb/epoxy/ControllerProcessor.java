@@ -83,10 +83,13 @@ class ControllerProcessor {
     return !controllerClassMap.isEmpty();
   }
 
-  void resolveGeneratedModelsAndWriteJava(List<GeneratedModelInfo> generatedModels) {
+  /** @return The number of controllers that helpers were written for. */
+  int resolveGeneratedModelsAndWriteJava(List<GeneratedModelInfo> generatedModels) {
     resolveGeneratedModelNames(controllerClassMap, generatedModels);
     generateJava(controllerClassMap);
+    int controllerCount = controllerClassMap.size();
     controllerClassMap.clear();
+    return controllerCount;
   }
 
   /**
@@ -172,6 +175,7 @@ class ControllerProcessor {
         }
 
         Set<ControllerModelField> otherControllerModelFields = otherEntry.getValue().getModels();
+        entry.getValue().getOriginatingElements().add(otherClass);
 
         if (belongToTheSamePackage(thisClass, otherClass, elementUtils)) {
           entry.getValue().addModels(otherControllerModelFields);
@@ -250,6 +254,10 @@ class ControllerProcessor {
         .addMethod(buildConstructor(controllerInfo))
         .addMethod(buildResetModelsMethod(controllerInfo));
 
+    for (TypeElement originatingElement : controllerInfo.getOriginatingElements()) {
+      builder.addOriginatingElement(originatingElement);
+    }
+
     if (configManager.shouldValidateModelUsage()) {
       builder.addFields(buildFieldsToSaveModelsForValidation(controllerInfo))
           .addMethod(buildValidateModelsHaveNotChangedMethod(controllerInfo))
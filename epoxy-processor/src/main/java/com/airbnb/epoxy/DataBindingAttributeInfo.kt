@@ -9,6 +9,9 @@ internal class DataBindingAttributeInfo(
         hashCodeValidator: HashCodeValidator
 ) : AttributeInfo() {
 
+    /** The binding class's setter for this variable, which is called directly when binding. */
+    val setterName: String = setterMethod.simpleName.toString()
+
     init {
         fieldName = removeSetPrefix(setterMethod.simpleName.toString())
         typeMirror = setterMethod.parameters[0].asType()
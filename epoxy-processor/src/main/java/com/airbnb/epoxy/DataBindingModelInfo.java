@@ -26,9 +26,10 @@ class DataBindingModelInfo extends GeneratedModelInfo {
   private final ClassName dataBindingClassName;
 
   DataBindingModelInfo(Types typeUtils, Elements elementUtils, ResourceValue layoutResource,
-      String moduleName) {
+      String moduleName, Element layoutsAnnotatedElement) {
     this.layoutResource = layoutResource;
     this.moduleName = moduleName;
+    originatingElement = layoutsAnnotatedElement;
 
     dataBindingClassName = getDataBindingClassNameForResource(layoutResource, moduleName);
 
@@ -90,4 +91,8 @@ class DataBindingModelInfo extends GeneratedModelInfo {
   ResourceValue getLayoutResource() {
     return layoutResource;
   }
+
+  ClassName getDataBindingClassName() {
+    return dataBindingClassName;
+  }
 }
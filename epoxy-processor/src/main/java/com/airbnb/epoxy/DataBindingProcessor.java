@@ -46,7 +46,7 @@ class DataBindingProcessor {
 
       for (ResourceValue layoutResource : layoutResources) {
         modelInfoList.add(new DataBindingModelInfo(typeUtils, elementUtils, layoutResource,
-            moduleName));
+            moduleName, packageElement));
       }
     }
   }
@@ -2,6 +2,7 @@ package com.airbnb.epoxy;
 
 import com.google.auto.service.AutoService;
 
+import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -23,10 +24,12 @@ import javax.lang.model.element.TypeElement;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
 
+import static com.airbnb.epoxy.ConfigManager.PROCESSOR_OPTION_GENERATE_LEAN_MODELS;
 import static com.airbnb.epoxy.ConfigManager.PROCESSOR_OPTION_IMPLICITLY_ADD_AUTO_MODELS;
 import static com.airbnb.epoxy.ConfigManager.PROCESSOR_OPTION_REQUIRE_ABSTRACT_MODELS;
 import static com.airbnb.epoxy.ConfigManager.PROCESSOR_OPTION_REQUIRE_HASHCODE;
 import static com.airbnb.epoxy.ConfigManager.PROCESSOR_OPTION_VALIDATE_MODEL_USAGE;
+import static com.airbnb.epoxy.ConfigManager.PROCESSOR_OPTION_WRITE_TIMING_REPORT;
 import static com.airbnb.epoxy.EpoxyProcessor.KAPT_KOTLIN_GENERATED_OPTION_NAME;
 
 /**
@@ -35,6 +38,13 @@ import static com.airbnb.epoxy.EpoxyProcessor.KAPT_KOTLIN_GENERATED_OPTION_NAME;
  * given field. Any constructors on the original class are duplicated. Abstract classes are ignored
  * since generated classes would have to be abstract in order to guarantee they compile, and that
  * reduces their usefulness and doesn't make as much sense to support.
+ * <p>
+ * This is declared to Gradle as a dynamic incremental processor, which is aggregating unless
+ * Kotlin extensions are generated. Every generated class is given the annotated elements it was
+ * generated from as its originating elements, so Gradle knows which generated files to remove when
+ * a source changes. The Kotlin extension file is written directly to the kapt directory instead of
+ * through the Filer, so Gradle could not track it, and the processor is not incremental when it is
+ * generated.
  */
 @AutoService(Processor.class)
 @SupportedOptions({
@@ -42,6 +52,8 @@ import static com.airbnb.epoxy.EpoxyProcessor.KAPT_KOTLIN_GENERATED_OPTION_NAME;
     PROCESSOR_OPTION_VALIDATE_MODEL_USAGE,
     PROCESSOR_OPTION_REQUIRE_ABSTRACT_MODELS,
     PROCESSOR_OPTION_REQUIRE_HASHCODE,
+    PROCESSOR_OPTION_GENERATE_LEAN_MODELS,
+    PROCESSOR_OPTION_WRITE_TIMING_REPORT,
     KAPT_KOTLIN_GENERATED_OPTION_NAME
 })
 public class EpoxyProcessor extends AbstractProcessor {
@@ -52,6 +64,10 @@ public class EpoxyProcessor extends AbstractProcessor {
   // /annotation-processor/src/main/java/TestAnnotationProcessor.kt
   public static final String KAPT_KOTLIN_GENERATED_OPTION_NAME = "kapt.kotlin.generated";
 
+  /** Declares a processor that is registered as dynamic to Gradle to be aggregating. */
+  static final String GRADLE_AGGREGATING_OPTION_NAME =
+      "org.gradle.annotation.processing.aggregating";
+
   private final Map<String, String> testOptions;
   private Filer filer;
   private Messager messager;
@@ -59,6 +75,8 @@ public class EpoxyProcessor extends AbstractProcessor {
   private Types typeUtils;
 
   private ConfigManager configManager;
+  private GeneratedModelWriter modelWriter;
+  private ProcessorTimer timer;
   private final ErrorLogger errorLogger = new ErrorLogger();
   private ControllerProcessor controllerProcessor;
   private DataBindingProcessor dataBindingProcessor;
@@ -94,6 +112,35 @@ public class EpoxyProcessor extends AbstractProcessor {
     return new EpoxyProcessor(options);
   }
 
+  /** For testing. */
+  public static EpoxyProcessor withLeanModels() {
+    HashMap<String, String> options = new HashMap<>();
+    options.put(PROCESSOR_OPTION_GENERATE_LEAN_MODELS, "true");
+    return new EpoxyProcessor(options);
+  }
+
+  /** For testing. */
+  public static EpoxyProcessor withKotlinExtensions(String kotlinGeneratedDirPath) {
+    HashMap<String, String> options = new HashMap<>();
+    options.put(KAPT_KOTLIN_GENERATED_OPTION_NAME, kotlinGeneratedDirPath);
+    return new EpoxyProcessor(options);
+  }
+
+  /** For testing. */
+  public static EpoxyProcessor withLeanModelsAndKotlinExtensions(String kotlinGeneratedDirPath) {
+    HashMap<String, String> options = new HashMap<>();
+    options.put(PROCESSOR_OPTION_GENERATE_LEAN_MODELS, "true");
+    options.put(KAPT_KOTLIN_GENERATED_OPTION_NAME, kotlinGeneratedDirPath);
+    return new EpoxyProcessor(options);
+  }
+
+  /** For testing. */
+  public static EpoxyProcessor withTimingReport() {
+    HashMap<String, String> options = new HashMap<>();
+    options.put(PROCESSOR_OPTION_WRITE_TIMING_REPORT, "true");
+    return new EpoxyProcessor(options);
+  }
+
   @Override
   public synchronized void init(ProcessingEnvironment processingEnv) {
     super.init(processingEnv);
@@ -102,19 +149,21 @@ public class EpoxyProcessor extends AbstractProcessor {
     elementUtils = processingEnv.getElementUtils();
     typeUtils = processingEnv.getTypeUtils();
 
-    ResourceProcessor resourceProcessor =
-        new ResourceProcessor(processingEnv, errorLogger, elementUtils, typeUtils);
-
     configManager =
         new ConfigManager(!testOptions.isEmpty() ? testOptions : processingEnv.getOptions(),
             elementUtils, typeUtils);
 
+    timer = new ProcessorTimer(configManager.shouldWriteTimingReport());
+
+    ResourceProcessor resourceProcessor =
+        new ResourceProcessor(processingEnv, errorLogger, elementUtils, typeUtils, timer);
+
     DataBindingModuleLookup dataBindingModuleLookup =
         new DataBindingModuleLookup(elementUtils, typeUtils, errorLogger, resourceProcessor);
 
-    GeneratedModelWriter modelWriter = new GeneratedModelWriter(filer, typeUtils, errorLogger,
+    modelWriter = new GeneratedModelWriter(filer, typeUtils, errorLogger,
         resourceProcessor,
-        configManager, dataBindingModuleLookup, elementUtils);
+        configManager, dataBindingModuleLookup, elementUtils, timer);
 
     controllerProcessor = new ControllerProcessor(filer, elementUtils, typeUtils, errorLogger,
         configManager);
@@ -134,7 +183,7 @@ public class EpoxyProcessor extends AbstractProcessor {
     lithoSpecProcessor = new LithoSpecProcessor(
         elementUtils, typeUtils, configManager, errorLogger, modelWriter);
 
-    kotlinExtensionWriter = new KotlinModelBuilderExtensionWriter(processingEnv);
+    kotlinExtensionWriter = new KotlinModelBuilderExtensionWriter(configManager);
   }
 
   @Override
@@ -156,6 +205,16 @@ public class EpoxyProcessor extends AbstractProcessor {
     return types;
   }
 
+  @Override
+  public Set<String> getSupportedOptions() {
+    Set<String> options = new LinkedHashSet<>(super.getSupportedOptions());
+    // Gradle asks for the options after init, so the config is known
+    if (configManager != null && configManager.getKotlinExtensionsDirectory() == null) {
+      options.add(GRADLE_AGGREGATING_OPTION_NAME);
+    }
+    return options;
+  }
+
   @Override
   public SourceVersion getSupportedSourceVersion() {
     return SourceVersion.latestSupported();
@@ -163,6 +222,8 @@ public class EpoxyProcessor extends AbstractProcessor {
 
   @Override
   public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    timer.startRound();
+    long roundStart = timer.start();
     try {
       processRound(roundEnv);
     } catch (Exception e) {
@@ -175,8 +236,17 @@ public class EpoxyProcessor extends AbstractProcessor {
       // Otherwise the compiler error output is clogged with lots of errors from the generated
       // classes  not existing, which makes it hard to see the actual errors.
 
-      validateAttributesImplementHashCode(generatedModels);
+      long hashCodeStart = timer.start();
+      int validatedCount = validateAttributesImplementHashCode(generatedModels);
+      timer.record("hashCodeValidation", hashCodeStart, validatedCount);
+    }
+
+    timer.record("round", roundStart, roundEnv.getRootElements().size());
+
+    if (roundEnv.processingOver()) {
       errorLogger.writeExceptions(messager);
+      modelWriter.writeLeanModelReport(messager);
+      timer.writeReport(filer, errorLogger);
     }
 
     // Let any other annotation processors use our annotations if they want to
@@ -184,26 +254,41 @@ public class EpoxyProcessor extends AbstractProcessor {
   }
 
   private void processRound(RoundEnvironment roundEnv) {
+    long start = timer.start();
     errorLogger.logErrors(configManager.processConfigurations(roundEnv));
+    timer.record("configurations", start, countElements(roundEnv, PackageEpoxyConfig.class)
+        + countElements(roundEnv, PackageModelViewConfig.class));
 
-    generatedModels.addAll(modelProcessor.processModels(roundEnv));
+    start = timer.start();
+    addGeneratedModels("models", start, modelProcessor.processModels(roundEnv));
 
+    start = timer.start();
     dataBindingProcessor.process(roundEnv);
+    timer.record("dataBindingLayouts", start,
+        countElements(roundEnv, EpoxyDataBindingLayouts.class));
 
-    generatedModels.addAll(lithoSpecProcessor.processSpecs(roundEnv));
+    start = timer.start();
+    addGeneratedModels("lithoSpecs", start, lithoSpecProcessor.processSpecs(roundEnv));
 
-    generatedModels.addAll(modelViewProcessor.process(roundEnv, generatedModels));
+    start = timer.start();
+    addGeneratedModels("modelViews", start, modelViewProcessor.process(roundEnv, generatedModels));
 
+    start = timer.start();
     controllerProcessor.process(roundEnv);
+    timer.record("controllers", start, countElements(roundEnv, AutoModel.class));
 
     if (dataBindingProcessor.hasModelsToWrite()
         && dataBindingProcessor.isDataBindingClassesGenerated()) {
-      generatedModels.addAll(dataBindingProcessor.resolveDataBindingClassesAndWriteJava());
+      start = timer.start();
+      addGeneratedModels("dataBindingModels", start,
+          dataBindingProcessor.resolveDataBindingClassesAndWriteJava());
     }
 
     // TODO: (eli_hart 8/23/17) don't wait until round over?
     if (roundEnv.processingOver()) {
+      start = timer.start();
       kotlinExtensionWriter.generateExtensionsForModels(generatedModels);
+      timer.record("kotlinExtensions", start, generatedModels.size());
     }
 
     if (controllerProcessor.hasControllersToGenerate()
@@ -212,13 +297,29 @@ public class EpoxyProcessor extends AbstractProcessor {
       // databinding is resolved.
       // However, if there was an error with the databinding resolution we can at least try to
       // finish writing the controllers before processing ends
-      controllerProcessor.resolveGeneratedModelsAndWriteJava(generatedModels);
+      start = timer.start();
+      int controllerCount = controllerProcessor.resolveGeneratedModelsAndWriteJava(generatedModels);
+      timer.record("controllerHelpers", start, controllerCount);
     }
   }
 
-  private void validateAttributesImplementHashCode(
+  private void addGeneratedModels(String phase, long startNanos,
+      Collection<? extends GeneratedModelInfo> models) {
+    generatedModels.addAll(models);
+    timer.record(phase, startNanos, models.size());
+  }
+
+  /** Elements are only counted for the timing report, so nothing is counted when it is off. */
+  private int countElements(RoundEnvironment roundEnv,
+      Class<? extends Annotation> annotationClass) {
+    return timer.isEnabled() ? roundEnv.getElementsAnnotatedWith(annotationClass).size() : 0;
+  }
+
+  /** @return The number of attributes that were validated. */
+  private int validateAttributesImplementHashCode(
       Collection<GeneratedModelInfo> generatedClasses) {
     HashCodeValidator hashCodeValidator = new HashCodeValidator(typeUtils, elementUtils);
+    int validatedCount = 0;
 
     for (GeneratedModelInfo generatedClass : generatedClasses) {
       for (AttributeInfo attributeInfo : generatedClass.getAttributeInfo()) {
@@ -226,6 +327,7 @@ public class EpoxyProcessor extends AbstractProcessor {
             && attributeInfo.useInHash()
             && !attributeInfo.ignoreRequireHashCode()) {
 
+          validatedCount++;
           try {
             hashCodeValidator.validate(attributeInfo);
           } catch (EpoxyProcessorException e) {
@@ -234,5 +336,7 @@ public class EpoxyProcessor extends AbstractProcessor {
         }
       }
     }
+
+    return validatedCount;
   }
 }
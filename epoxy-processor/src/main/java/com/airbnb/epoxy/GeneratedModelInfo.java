@@ -42,6 +42,11 @@ abstract class GeneratedModelInfo {
 
   protected TypeName superClassName;
   protected TypeElement superClassElement;
+  /**
+   * The annotated element that this model is generated from. This is given to the Filer as the
+   * originating element of the generated files so that they can be processed incrementally.
+   */
+  protected Element originatingElement;
   protected TypeName parametrizedClassName;
   protected ClassName generatedClassName;
   protected TypeName boundObjectTypeName;
@@ -78,6 +83,7 @@ abstract class GeneratedModelInfo {
   protected void collectMethodsReturningClassType(TypeElement modelClass, Types typeUtils) {
     TypeElement clazz = modelClass;
     while (clazz.getSuperclass().getKind() != TypeKind.NONE) {
+      boolean isBaseModel = ClassName.get(clazz).equals(ClassNames.EPOXY_MODEL_UNTYPED);
       for (Element subElement : clazz.getEnclosedElements()) {
         Set<Modifier> modifiers = subElement.getModifiers();
         if (subElement.getKind() == ElementKind.METHOD
@@ -94,7 +100,7 @@ abstract class GeneratedModelInfo {
               continue;
             }
             methodsReturningClassType.add(new MethodInfo(methodName, modifiers,
-                buildParamSpecs(params), castedSubElement.isVarArgs()));
+                buildParamSpecs(params), castedSubElement.isVarArgs(), isBaseModel));
           }
         }
       }
@@ -159,6 +165,10 @@ abstract class GeneratedModelInfo {
     return superClassElement;
   }
 
+  Element getOriginatingElement() {
+    return originatingElement;
+  }
+
   TypeName getSuperClassName() {
     return superClassName;
   }
@@ -238,13 +248,16 @@ abstract class GeneratedModelInfo {
     final Set<Modifier> modifiers;
     final List<ParameterSpec> params;
     final boolean varargs;
+    /** True if the method is declared on EpoxyModel itself, rather than on a subclass. */
+    final boolean declaredOnBaseModel;
 
     MethodInfo(String name, Set<Modifier> modifiers, List<ParameterSpec> params,
-        boolean varargs) {
+        boolean varargs, boolean declaredOnBaseModel) {
       this.name = name;
       this.modifiers = modifiers;
       this.params = params;
       this.varargs = varargs;
+      this.declaredOnBaseModel = declaredOnBaseModel;
     }
 
     @Override
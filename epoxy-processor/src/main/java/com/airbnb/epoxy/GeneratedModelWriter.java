@@ -27,10 +27,12 @@ import java.util.Collections;
 import java.util.List;
 
 import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
 
 import static com.airbnb.epoxy.ModelViewWriterKt.addStyleApplierCode;
 import static com.airbnb.epoxy.ParisStyleAttributeInfoKt.PARIS_DEFAULT_STYLE_CONSTANT_NAME;
@@ -87,7 +89,11 @@ class GeneratedModelWriter {
   private final ConfigManager configManager;
   private final DataBindingModuleLookup dataBindingModuleLookup;
   private final Elements elements;
+  private final ProcessorTimer timer;
   private BuilderHooks builderHooks;
+  private int leanModelCount;
+  private int omittedMethodCount;
+  private int omittedBuilderInterfaceCount;
 
   static class BuilderHooks {
     void beforeFinalBuild(TypeSpec.Builder builder) {
@@ -120,7 +126,7 @@ class GeneratedModelWriter {
 
   GeneratedModelWriter(Filer filer, Types typeUtils, ErrorLogger errorLogger,
       ResourceProcessor resourceProcessor, ConfigManager configManager,
-      DataBindingModuleLookup dataBindingModuleLookup, Elements elements) {
+      DataBindingModuleLookup dataBindingModuleLookup, Elements elements, ProcessorTimer timer) {
     this.filer = filer;
     this.typeUtils = typeUtils;
     this.errorLogger = errorLogger;
@@ -128,6 +134,7 @@ class GeneratedModelWriter {
     this.configManager = configManager;
     this.dataBindingModuleLookup = dataBindingModuleLookup;
     this.elements = elements;
+    this.timer = timer;
   }
 
   void generateClassForModel(GeneratedModelInfo info) throws IOException {
@@ -136,6 +143,15 @@ class GeneratedModelWriter {
 
   void generateClassForModel(GeneratedModelInfo info, BuilderHooks builderHooks)
       throws IOException {
+    long start = timer.start();
+    try {
+      writeModel(info, builderHooks);
+    } finally {
+      timer.record("modelWriting", start, 1);
+    }
+  }
+
+  private void writeModel(GeneratedModelInfo info, BuilderHooks builderHooks) throws IOException {
     this.builderHooks = builderHooks;
     if (!info.shouldGenerateModel()) {
       return;
@@ -144,6 +160,7 @@ class GeneratedModelWriter {
     final ClassName generatedModelName = info.getGeneratedName();
     TypeSpec.Builder builder = TypeSpec.classBuilder(generatedModelName)
         .addJavadoc("Generated file. Do not modify!")
+        .addOriginatingElement(info.getOriginatingElement())
         .addModifiers(PUBLIC)
         .superclass(info.getSuperClassName())
         .addSuperinterface(getGeneratedModelInterface(info))
@@ -166,19 +183,45 @@ class GeneratedModelWriter {
         .addMethods(generateDataBindingMethodsIfNeeded(info))
         .addMethod(generateReset(info))
         .addMethod(generateEquals(info))
-        .addMethod(generateHashCode(info))
-        .addMethod(generateToString(info));
+        .addMethod(generateHashCode(info));
+
+    if (configManager.shouldGenerateLeanModels()) {
+      leanModelCount++;
+      omittedMethodCount++;
+    } else {
+      builder.addMethod(generateToString(info));
+    }
 
     builderHooks.beforeFinalBuild(builder);
 
-    new ModelBuilderInterfaceWriter(filer, info, builder.build().methodSpecs)
-        .addInterface(builder);
+    ModelBuilderInterfaceWriter builderInterfaceWriter =
+        new ModelBuilderInterfaceWriter(filer, info, builder.build().methodSpecs);
+    if (configManager.shouldGenerateBuilderInterface(info)) {
+      builderInterfaceWriter.addInterface(builder);
+    } else {
+      omittedBuilderInterfaceCount++;
+      omittedMethodCount += builderInterfaceWriter.getInterfaceMethodCount();
+    }
 
     JavaFile.builder(generatedModelName.packageName(), builder.build())
         .build()
         .writeTo(filer);
   }
 
+  /**
+   * Report how much generated code was left out of lean models, if lean models are enabled. See
+   * {@link ConfigManager#shouldGenerateLeanModels()}.
+   */
+  void writeLeanModelReport(Messager messager) {
+    if (leanModelCount == 0) {
+      return;
+    }
+
+    messager.printMessage(Diagnostic.Kind.NOTE, String.format(
+        "Epoxy generated %d lean models, omitting %d methods and %d builder interfaces",
+        leanModelCount, omittedMethodCount, omittedBuilderInterfaceCount));
+  }
+
   private Iterable<MethodSpec> generateOtherLayoutOptions(GeneratedModelInfo info) {
     if (!info.includeOtherLayoutOptions
         || info.isProgrammaticView()) { // Layout resources can't be mixed with programmatic views
@@ -716,10 +759,34 @@ class GeneratedModelWriter {
     return methods;
   }
 
+  /**
+   * The id(long), id(CharSequence), and layout methods are overridden even in lean models, since
+   * other setters are usually chained after them.
+   */
+  private static boolean isLeanModelOverride(GeneratedModelInfo.MethodInfo methodInfo) {
+    if ("layout".equals(methodInfo.name)) {
+      return true;
+    }
+
+    if (!"id".equals(methodInfo.name) || methodInfo.params.size() != 1) {
+      return false;
+    }
+
+    TypeName paramType = methodInfo.params.get(0).type;
+    return paramType.equals(TypeName.LONG) || paramType.equals(ClassName.get(CharSequence.class));
+  }
+
   private Iterable<MethodSpec> generateMethodsReturningClassType(GeneratedModelInfo info) {
     List<MethodSpec> methods = new ArrayList<>(info.getMethodsReturningClassType().size());
 
     for (GeneratedModelInfo.MethodInfo methodInfo : info.getMethodsReturningClassType()) {
+      if (methodInfo.declaredOnBaseModel
+          && !configManager.shouldOverrideAllBaseModelChainingMethods(info)
+          && !isLeanModelOverride(methodInfo)) {
+        omittedMethodCount++;
+        continue;
+      }
+
       Builder builder = MethodSpec.methodBuilder(methodInfo.name)
           .addModifiers(methodInfo.modifiers)
           .addParameters(methodInfo.params)
@@ -902,10 +969,36 @@ class GeneratedModelWriter {
         .endControlFlow()
         .addStatement("$T that = ($T) previousModel", generatedModelClass, generatedModelClass);
 
+    // Models generated from a layout know their binding class, and each of their attributes is a
+    // variable in it. Its typed setters are called directly instead of going through setVariable,
+    // which looks up the variable by id and boxes primitives on every bind. The binding class of
+    // other models is unknown, since their layout can change at runtime.
+    ClassName bindingClass = info instanceof DataBindingModelInfo
+        ? ((DataBindingModelInfo) info).getDataBindingClassName() : null;
+    if (bindingClass != null) {
+      baseMethodBuilder
+          .addStatement("$T typedBinding = ($T) binding", bindingClass, bindingClass);
+      payloadMethodBuilder
+          .addStatement("$T typedBinding = ($T) binding", bindingClass, bindingClass);
+    }
+
     ClassName brClass = ClassName.get(moduleName, "BR");
     boolean validateAttributes = configManager.shouldValidateModelUsage();
     for (AttributeInfo attribute : info.getAttributeInfo()) {
       String attrName = attribute.getFieldName();
+
+      if (bindingClass != null && attribute instanceof DataBindingAttributeInfo) {
+        CodeBlock setterBlock = CodeBlock.of("typedBinding.$L($L)",
+            ((DataBindingAttributeInfo) attribute).getSetterName(), attribute.getterCode());
+
+        // The variable is known to exist, so it doesn't need to be validated
+        baseMethodBuilder.addStatement("$L", setterBlock);
+        startNotEqualsControlFlow(payloadMethodBuilder, attribute)
+            .addStatement("$L", setterBlock)
+            .endControlFlow();
+        continue;
+      }
+
       CodeBlock setVariableBlock =
           CodeBlock.of("binding.setVariable($T.$L, $L)", brClass, attrName, attribute.getterCode());
 
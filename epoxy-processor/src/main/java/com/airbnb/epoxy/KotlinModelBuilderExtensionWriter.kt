@@ -2,25 +2,23 @@ package com.airbnb.epoxy
 
 import com.squareup.kotlinpoet.*
 import java.io.*
-import javax.annotation.processing.*
 import javax.lang.model.element.*
 
 private const val KOTLIN_EXTENSION_FILE_NAME = "EpoxyModelKotlinExtensions"
 
+/**
+ * Kotlin cannot directly reference a class with a $ in the name, so the extension function of such
+ * a model initializes it through its builder interface instead of the generated class.
+ */
+internal fun extensionUsesBuilderInterface(model: GeneratedModelInfo)
+        = model.generatedName.simpleName().contains("$")
+
 internal class KotlinModelBuilderExtensionWriter(
-        private val processingEnv: ProcessingEnvironment
+        private val configManager: ConfigManager
 ) {
 
     fun generateExtensionsForModels(generatedModels: List<GeneratedModelInfo>) {
-        val kaptGeneratedDirPath = processingEnv.options[EpoxyProcessor.KAPT_KOTLIN_GENERATED_OPTION_NAME]
-                ?.replace("kaptKotlin", "kapt")
-                ?: run {
-            // Need to change the path because of https://youtrack.jetbrains.com/issue/KT-19097
-
-            // If the option does not exist this is not being processed by kapt,
-            // so we don't need to generate kotlin extensions
-            return
-        }
+        val kotlinExtensionsDirectory = configManager.kotlinExtensionsDirectory ?: return
 
         generatedModels.groupBy { it.generatedClassName.packageName() }
                 .map { (packageName, models) ->
@@ -29,7 +27,7 @@ internal class KotlinModelBuilderExtensionWriter(
                             models)
                 }
                 .forEach {
-                    it.writeTo(File(kaptGeneratedDirPath))
+                    it.writeTo(File(kotlinExtensionsDirectory))
                 }
     }
 
@@ -53,11 +51,19 @@ internal class KotlinModelBuilderExtensionWriter(
                 .any { Modifier.PUBLIC !in it.modifiers }
 
         // Kotlin cannot directly reference a class with a $ in the name. It must be wrapped in ticks (``)
-        val useTicksAroundModelName = model.generatedName.simpleName().contains("$")
+        val useTicksAroundModelName = extensionUsesBuilderInterface(model)
         val tick = if (useTicksAroundModelName) "`" else ""
 
+        // The initializer is called on the generated model itself, so its setters are called
+        // directly instead of through the builder interface
+        val initializerReceiver = if (useTicksAroundModelName) {
+            getBuilderInterfaceTypeName(model)
+        } else {
+            model.parameterizedGeneratedName
+        }
+
         val initializerLambda = LambdaTypeName.get(
-                receiver = getBuilderInterfaceTypeName(model).toKPoet(),
+                receiver = initializerReceiver.toKPoet(),
                 returnType = ClassName.bestGuess("kotlin.Unit"))
 
         FunSpec.builder(getMethodName(model)).run {
@@ -66,15 +72,17 @@ internal class KotlinModelBuilderExtensionWriter(
                     "modelInitializer",
                     initializerLambda)
 
+            // Inlining lets the initializer's body be copied into the call site, so no lambda is
+            // allocated for each model that is built. The initializer is called directly rather than
+            // inside another lambda so that it never needs to be crossinline.
             addModifiers(KModifier.INLINE)
             if (constructorIsNotPublic) addModifiers(KModifier.INTERNAL)
 
-            beginControlFlow(
-                    "$tick%T$tick().apply ",
+            addStatement(
+                    "val model = $tick%T$tick()",
                     model.generatedClassName.toKPoet())
-            addStatement("modelInitializer()")
-            endControlFlow()
-            addStatement(".addTo(this)")
+            addStatement("model.modelInitializer()")
+            addStatement("model.addTo(this)")
             return build()
         }
 
@@ -18,6 +18,7 @@ internal class LithoModelInfo(
 
     init {
         superClassElement = Utils.getElementByName(EPOXY_LITHO_MODEL, elementUtils, typeUtils) as TypeElement
+        originatingElement = layoutSpecClassElement
 
         lithoComponentName = getLithoComponentName(elementUtils, layoutSpecClassElement)
         superClassName = ParameterizedTypeName.get(EPOXY_LITHO_MODEL, lithoComponentName)
@@ -27,6 +27,7 @@ internal class ModelBuilderInterfaceWriter(
 
         val modelInterface = TypeSpec.interfaceBuilder(
                 getBuilderInterfaceClassName(modelInfo)).run {
+            addOriginatingElement(modelInfo.originatingElement)
             addModifiers(Modifier.PUBLIC)
             addTypeVariables(modelInfo.typeVariables)
             addMethods(getInterfaceMethods())
@@ -38,6 +39,9 @@ internal class ModelBuilderInterfaceWriter(
                 .writeTo(filer)
     }
 
+    /** The number of methods the interface has, whether or not it is written. */
+    fun getInterfaceMethodCount() = getInterfaceMethods().size
+
     private fun getInterfaceMethods(): List<MethodSpec> {
         return methods.filter {
             it.returnType == modelInfo.parameterizedGeneratedName
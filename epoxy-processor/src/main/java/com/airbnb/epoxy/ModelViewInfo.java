@@ -39,6 +39,7 @@ class ModelViewInfo extends GeneratedModelInfo {
 
     viewAnnotation = viewElement.getAnnotation(ModelView.class);
     this.viewElement = viewElement;
+    originatingElement = viewElement;
     this.typeUtils = typeUtils;
     this.elements = elements;
     this.errorLogger = errorLogger;
@@ -0,0 +1,155 @@
+package com.airbnb.epoxy;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.annotation.processing.Filer;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Records how long each phase of annotation processing takes, and how many elements it handles, so
+ * that the cost of the processor can be tracked as a project grows. This is enabled with the {@link
+ * ConfigManager#PROCESSOR_OPTION_WRITE_TIMING_REPORT} option, and otherwise records nothing.
+ * <p>
+ * Phases are recorded per round, and a phase that runs several times in a round (such as writing a
+ * model) is combined into one entry with a call count. Some phases run within others, for example
+ * resource scanning happens while models are processed, so the time of an inner phase is also
+ * included in its outer phase.
+ * <p>
+ * The report is written as JSON to the generated sources directory once processing is over. See
+ * {@link #REPORT_FILE_NAME}.
+ */
+class ProcessorTimer {
+  static final String REPORT_FILE_NAME = "epoxy_processor_timings.json";
+  private static final String REPORT_PACKAGE = "com.airbnb.epoxy";
+
+  private final boolean enabled;
+  private final List<Map<String, PhaseTiming>> rounds = new ArrayList<>();
+  private Map<String, PhaseTiming> currentRound;
+
+  ProcessorTimer(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  boolean isEnabled() {
+    return enabled;
+  }
+
+  void startRound() {
+    if (!enabled) {
+      return;
+    }
+
+    currentRound = new LinkedHashMap<>();
+    rounds.add(currentRound);
+  }
+
+  /**
+   * @return A start time to pass to {@link #record(String, long, int)} when the phase finishes.
+   */
+  long start() {
+    return enabled ? System.nanoTime() : 0;
+  }
+
+  /**
+   * Record that a phase finished.
+   *
+   * @param startNanos   The time returned by {@link #start()} when the phase started.
+   * @param elementCount The number of elements the phase handled.
+   */
+  void record(String phase, long startNanos, int elementCount) {
+    if (!enabled || currentRound == null) {
+      return;
+    }
+
+    long durationNanos = System.nanoTime() - startNanos;
+
+    PhaseTiming timing = currentRound.get(phase);
+    if (timing == null) {
+      timing = new PhaseTiming();
+      currentRound.put(phase, timing);
+    }
+
+    timing.calls++;
+    timing.durationNanos += durationNanos;
+    timing.elementCount += elementCount;
+  }
+
+  void writeReport(Filer filer, ErrorLogger errorLogger) {
+    if (!enabled) {
+      return;
+    }
+
+    Map<String, PhaseTiming> totals = new LinkedHashMap<>();
+    for (Map<String, PhaseTiming> round : rounds) {
+      for (Map.Entry<String, PhaseTiming> entry : round.entrySet()) {
+        PhaseTiming total = totals.get(entry.getKey());
+        if (total == null) {
+          total = new PhaseTiming();
+          totals.put(entry.getKey(), total);
+        }
+        total.add(entry.getValue());
+      }
+    }
+
+    StringBuilder json = new StringBuilder();
+    json.append("{\n  \"rounds\": [");
+    for (int i = 0; i < rounds.size(); i++) {
+      json.append(i == 0 ? "\n" : ",\n")
+          .append("    {\n      \"round\": ").append(i + 1).append(",\n")
+          .append("      \"phases\": ");
+      appendPhases(json, rounds.get(i), "      ");
+      json.append("\n    }");
+    }
+    json.append("\n  ],\n  \"totals\": ");
+    appendPhases(json, totals, "  ");
+    json.append("\n}\n");
+
+    try {
+      FileObject file = filer.createResource(StandardLocation.SOURCE_OUTPUT, REPORT_PACKAGE,
+          REPORT_FILE_NAME);
+      Writer writer = file.openWriter();
+      try {
+        writer.write(json.toString());
+      } finally {
+        writer.close();
+      }
+    } catch (IOException e) {
+      errorLogger.logError(e, "Unable to write the Epoxy processor timing report");
+    }
+  }
+
+  private static void appendPhases(StringBuilder json, Map<String, PhaseTiming> phases,
+      String indent) {
+    json.append("[");
+    boolean first = true;
+    for (Map.Entry<String, PhaseTiming> entry : phases.entrySet()) {
+      PhaseTiming timing = entry.getValue();
+      json.append(first ? "\n" : ",\n").append(indent).append("  ")
+          .append(String.format(Locale.US,
+              "{\"phase\": \"%s\", \"millis\": %.3f, \"calls\": %d, \"elements\": %d}",
+              entry.getKey(), timing.durationNanos / 1_000_000.0, timing.calls,
+              timing.elementCount));
+      first = false;
+    }
+    json.append(first ? "]" : "\n" + indent + "]");
+  }
+
+  private static class PhaseTiming {
+    int calls;
+    long durationNanos;
+    int elementCount;
+
+    void add(PhaseTiming other) {
+      calls += other.calls;
+      durationNanos += other.durationNanos;
+      elementCount += other.elementCount;
+    }
+  }
+}
@@ -1,5 +1,7 @@
 package com.airbnb.epoxy;
 
+import android.support.annotation.Nullable;
+
 import com.squareup.javapoet.ClassName;
 import com.sun.source.util.Trees;
 import com.sun.tools.javac.code.Symbol;
@@ -8,6 +10,7 @@ import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.tree.TreeScanner;
 
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -37,23 +40,63 @@ class ResourceProcessor {
   private final Elements elementUtils;
   private final Types typeUtils;
 
-  private Trees trees;
+  private final ProcessorTimer timer;
+  /** Null if the compiler's trees are not available, in which case resources are not scanned. */
+  @Nullable private final Trees trees;
   private final Map<String, ClassName> rClassNameMap = new HashMap<>();
   /** Maps the name of an R class to a list of all of the resources in that class. */
   private final Map<ClassName, List<ResourceValue>> rClassResources = new HashMap<>();
+  /**
+   * The resources found by scanning each annotation, so that the tree of an annotation is only
+   * scanned once even if its resources are looked up again, such as for each string prop of a view
+   * or while both resolving and generating a model.
+   */
+  private final Map<ScanKey, List<ResourceValue>> scannedResources = new HashMap<>();
   private final AnnotationResourceParamScanner scanner = new AnnotationResourceParamScanner();
 
   ResourceProcessor(ProcessingEnvironment processingEnv, ErrorLogger errorLogger,
-      Elements elementUtils, Types typeUtils) {
+      Elements elementUtils, Types typeUtils, ProcessorTimer timer) {
     this.errorLogger = errorLogger;
+    this.timer = timer;
     this.elementUtils = elementUtils;
     this.typeUtils = typeUtils;
 
+    trees = getTrees(processingEnv);
+  }
+
+  @Nullable
+  private static Trees getTrees(ProcessingEnvironment processingEnv) {
     try {
-      trees = Trees.instance(processingEnv);
-    } catch (IllegalArgumentException ignored) {
+      return Trees.instance(processingEnv);
+    } catch (IllegalArgumentException e) {
+      // Gradle wraps the environment of incremental processors, and Trees only accepts javac's own
+      // environment, so try again with the environment that is wrapped
+      ProcessingEnvironment wrappedEnv = getWrappedEnvironment(processingEnv);
+      return wrappedEnv != null ? getTrees(wrappedEnv) : null;
+    }
+  }
 
+  @Nullable
+  private static ProcessingEnvironment getWrappedEnvironment(ProcessingEnvironment processingEnv) {
+    for (Class<?> clazz = processingEnv.getClass(); clazz != null; clazz = clazz.getSuperclass()) {
+      for (Field field : clazz.getDeclaredFields()) {
+        if (!ProcessingEnvironment.class.isAssignableFrom(field.getType())) {
+          continue;
+        }
+
+        try {
+          field.setAccessible(true);
+          Object wrappedEnv = field.get(processingEnv);
+          if (wrappedEnv != null && wrappedEnv != processingEnv) {
+            return (ProcessingEnvironment) wrappedEnv;
+          }
+        } catch (IllegalAccessException | RuntimeException ignored) {
+          // The field can't be read, so resources can't be scanned
+        }
+      }
     }
+
+    return null;
   }
 
   ResourceValue getLayoutInAnnotation(Element element, Class annotationClass) {
@@ -109,9 +152,36 @@ class ResourceProcessor {
   List<ResourceValue> getResourcesInAnnotation(Element element, Class annotationClass,
       String resourceType, List<Integer> resourceValues) {
     List<ResourceValue> resources = new ArrayList<>(resourceValues.size());
+    resources.addAll(getScannedResources(element, annotationClass, resourceType));
+
+    // Resource values may not have been picked up by the scanner if they are hardcoded.
+    // In that case we just use the hardcoded value without an R class
+    if (resources.size() != resourceValues.size()) {
+      for (int layoutValue : resourceValues) {
+        if (!isLayoutValueInResources(resources, layoutValue)) {
+          resources.add(new ResourceValue(layoutValue));
+        }
+      }
+    }
+
+    return resources;
+  }
+
+  private List<ResourceValue> getScannedResources(Element element, Class annotationClass,
+      String resourceType) {
+    ScanKey key = new ScanKey(element, annotationClass, resourceType);
+    List<ResourceValue> resources = scannedResources.get(key);
+    if (resources != null) {
+      return resources;
+    }
 
-    JCTree tree = (JCTree) trees.getTree(element, getAnnotationMirror(element, annotationClass));
-    // tree can be null if the references are compiled types and not source
+    long start = timer.start();
+    resources = new ArrayList<>();
+    JCTree tree = trees != null
+        ? (JCTree) trees.getTree(element, getAnnotationMirror(element, annotationClass))
+        : null;
+    // tree can be null if the references are compiled types and not source, or if the compiler's
+    // trees are not available
     if (tree != null) {
       // Collects details about the layout resource used for the annotation parameter
       scanner.clearResults();
@@ -127,17 +197,9 @@ class ResourceProcessor {
         ));
       }
     }
+    timer.record("resourceScanning", start, resources.size());
 
-    // Resource values may not have been picked up by the scanner if they are hardcoded.
-    // In that case we just use the hardcoded value without an R class
-    if (resources.size() != resourceValues.size()) {
-      for (int layoutValue : resourceValues) {
-        if (!isLayoutValueInResources(resources, layoutValue)) {
-          resources.add(new ResourceValue(layoutValue));
-        }
-      }
-    }
-
+    scannedResources.put(key, resources);
     return resources;
   }
 
@@ -325,6 +387,41 @@ class ResourceProcessor {
     }
   }
 
+  private static class ScanKey {
+    final Element element;
+    final Class annotationClass;
+    final String resourceType;
+
+    ScanKey(Element element, Class annotationClass, String resourceType) {
+      this.element = element;
+      this.annotationClass = annotationClass;
+      this.resourceType = resourceType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof ScanKey)) {
+        return false;
+      }
+
+      ScanKey that = (ScanKey) o;
+      return element.equals(that.element)
+          && annotationClass.equals(that.annotationClass)
+          && resourceType.equals(that.resourceType);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = element.hashCode();
+      result = 31 * result + annotationClass.hashCode();
+      result = 31 * result + resourceType.hashCode();
+      return result;
+    }
+  }
+
   private static class ScannerResult {
     final ClassName rClass;
     final String resourceName;
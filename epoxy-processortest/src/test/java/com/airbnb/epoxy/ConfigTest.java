@@ -2,18 +2,27 @@ package com.airbnb.epoxy;
 
 import com.google.testing.compile.JavaFileObjects;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
 
 import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
 
 import static com.google.common.truth.Truth.assert_;
 import static com.google.testing.compile.JavaFileObjects.forResource;
 import static com.google.testing.compile.JavaSourceSubjectFactory.javaSource;
 import static com.google.testing.compile.JavaSourcesSubjectFactory.javaSources;
 import static java.util.Arrays.asList;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class ConfigTest {
 
+  @Rule public TemporaryFolder kotlinGeneratedDir = new TemporaryFolder();
+
   private static final JavaFileObject CONFIG_CLASS_REQUIRE_HASH =
       JavaFileObjects
           .forSourceString("com.airbnb.epoxy.configtest.package-info", "@PackageEpoxyConfig(\n"
@@ -279,4 +288,97 @@ public class ConfigTest {
         .and()
         .generatesSources(generatedModel);
   }
+
+  @Test
+  public void testConfigLeanModels() {
+    JavaFileObject model =
+        forResource("ModelForLeanGeneration.java");
+
+    JavaFileObject generatedModel = JavaFileObjects.forResource("ModelForLeanGeneration_.java");
+
+    assert_().about(javaSource())
+        .that(model)
+        .processedWith(EpoxyProcessor.withLeanModels())
+        .compilesWithoutError()
+        .and()
+        .generatesSources(generatedModel);
+  }
+
+  @Test
+  public void testConfigLeanModelsWithKotlinExtensions() {
+    JavaFileObject model =
+        forResource("ModelForLeanGeneration.java");
+
+    JavaFileObject generatedModel = JavaFileObjects.forResource("ModelForLeanGeneration_.java");
+
+    // The Kotlin extension calls the generated model directly, so no builder interface is needed
+    assert_().about(javaSource())
+        .that(model)
+        .processedWith(EpoxyProcessor.withLeanModelsAndKotlinExtensions(
+            kotlinGeneratedDir.getRoot().getAbsolutePath()))
+        .compilesWithoutError()
+        .and()
+        .generatesSources(generatedModel);
+
+    assertTrue(new File(kotlinGeneratedDir.getRoot(),
+        "com/airbnb/epoxy/EpoxyModelKotlinExtensions.kt").exists());
+  }
+
+  @Test
+  public void testConfigLeanNestedModelWithKotlinExtensionsKeepsBuilderInterface() {
+    JavaFileObject model =
+        forResource("ModelWithSuperAttributes.java");
+
+    // The Kotlin extension of a model with a '$' in its name uses the builder interface
+    assert_().about(javaSource())
+        .that(model)
+        .processedWith(EpoxyProcessor.withLeanModelsAndKotlinExtensions(
+            kotlinGeneratedDir.getRoot().getAbsolutePath()))
+        .compilesWithoutError()
+        .and()
+        .generatesFileNamed(StandardLocation.SOURCE_OUTPUT, "com.airbnb.epoxy",
+            "ModelWithSuperAttributes_SubModelWithSuperAttributesBuilder.java");
+  }
+
+  @Test
+  public void testProcessorIsAggregatingWithoutKotlinExtensions() {
+    EpoxyProcessor processor = new EpoxyProcessor();
+
+    assert_().about(javaSource())
+        .that(forResource("BasicModelWithAttribute.java"))
+        .processedWith(processor)
+        .compilesWithoutError();
+
+    assertTrue(processor.getSupportedOptions()
+        .contains(EpoxyProcessor.GRADLE_AGGREGATING_OPTION_NAME));
+  }
+
+  @Test
+  public void testProcessorIsNotIncrementalWithKotlinExtensions() {
+    // The Kotlin extension file is not written through the Filer, so Gradle can't track it
+    EpoxyProcessor processor =
+        EpoxyProcessor.withKotlinExtensions(kotlinGeneratedDir.getRoot().getAbsolutePath());
+
+    assert_().about(javaSource())
+        .that(forResource("BasicModelWithAttribute.java"))
+        .processedWith(processor)
+        .compilesWithoutError();
+
+    assertFalse(processor.getSupportedOptions()
+        .contains(EpoxyProcessor.GRADLE_AGGREGATING_OPTION_NAME));
+  }
+
+  @Test
+  public void testConfigTimingReport() {
+    JavaFileObject model =
+        forResource("BasicModelWithAttribute.java");
+
+    assert_().about(javaSource())
+        .that(model)
+        .processedWith(EpoxyProcessor.withTimingReport())
+        .compilesWithoutError()
+        .and()
+        .generatesFileNamed(StandardLocation.SOURCE_OUTPUT, "com.airbnb.epoxy",
+            ProcessorTimer.REPORT_FILE_NAME);
+  }
 }
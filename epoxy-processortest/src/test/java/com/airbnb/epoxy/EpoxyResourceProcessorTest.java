@@ -5,7 +5,15 @@ import com.google.testing.compile.JavaFileObjects;
 import org.junit.Test;
 
 import java.util.Arrays;
-
+import java.util.Locale;
+import java.util.Map;
+
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
 import javax.tools.JavaFileObject;
 
 import static com.google.common.truth.Truth.assert_;
@@ -90,4 +98,116 @@ public class EpoxyResourceProcessorTest {
         .and()
         .generatesSources(generatedModel, generatedModelWithDifferentRClass);
   }
+
+  @Test
+  public void testGenerateDefaultLayoutMethodInWrappedEnvironment() {
+    JavaFileObject model = JavaFileObjects
+        .forResource("ModelForRProcessingTest.java");
+
+    JavaFileObject generatedModel = JavaFileObjects
+        .forResource("ModelForRProcessingTest_.java");
+
+    // Gradle wraps the environment of incremental processors, which the R classes can still be
+    // scanned through
+    assert_().about(javaSources())
+        .that(Arrays.asList(model, R))
+        .processedWith(new WrappedEnvironmentProcessor(true))
+        .compilesWithoutError()
+        .and()
+        .generatesSources(generatedModel);
+  }
+
+  @Test
+  public void testGenerateDefaultLayoutMethodWithoutTrees() {
+    JavaFileObject model = JavaFileObjects
+        .forResource("ModelForRProcessingTest.java");
+
+    // Without access to the compiler's trees the hardcoded layout value is used instead
+    assert_().about(javaSources())
+        .that(Arrays.asList(model, R))
+        .processedWith(new WrappedEnvironmentProcessor(false))
+        .compilesWithoutError();
+  }
+
+  /** Processes with a wrapped environment, like Gradle does for incremental processors. */
+  private static class WrappedEnvironmentProcessor extends EpoxyProcessor {
+    private final boolean exposeWrappedEnvironment;
+
+    WrappedEnvironmentProcessor(boolean exposeWrappedEnvironment) {
+      this.exposeWrappedEnvironment = exposeWrappedEnvironment;
+    }
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+      super.init(exposeWrappedEnvironment
+          ? new WrappedEnvironment(processingEnv)
+          : new OpaqueEnvironment(processingEnv));
+    }
+  }
+
+  /** Keeps the wrapped environment in a field, as Gradle's wrapper does. */
+  private static class WrappedEnvironment extends OpaqueEnvironment {
+    private final ProcessingEnvironment delegate;
+
+    WrappedEnvironment(ProcessingEnvironment delegate) {
+      super(delegate);
+      this.delegate = delegate;
+    }
+  }
+
+  /** Only keeps the parts of the wrapped environment, so it can't be found by reflection. */
+  private static class OpaqueEnvironment implements ProcessingEnvironment {
+    private final Map<String, String> options;
+    private final Messager messager;
+    private final Filer filer;
+    private final Elements elementUtils;
+    private final Types typeUtils;
+    private final SourceVersion sourceVersion;
+    private final Locale locale;
+
+    OpaqueEnvironment(ProcessingEnvironment processingEnv) {
+      options = processingEnv.getOptions();
+      messager = processingEnv.getMessager();
+      filer = processingEnv.getFiler();
+      elementUtils = processingEnv.getElementUtils();
+      typeUtils = processingEnv.getTypeUtils();
+      sourceVersion = processingEnv.getSourceVersion();
+      locale = processingEnv.getLocale();
+    }
+
+    @Override
+    public Map<String, String> getOptions() {
+      return options;
+    }
+
+    @Override
+    public Messager getMessager() {
+      return messager;
+    }
+
+    @Override
+    public Filer getFiler() {
+      return filer;
+    }
+
+    @Override
+    public Elements getElementUtils() {
+      return elementUtils;
+    }
+
+    @Override
+    public Types getTypeUtils() {
+      return typeUtils;
+    }
+
+    @Override
+    public SourceVersion getSourceVersion() {
+      return sourceVersion;
+    }
+
+    @Override
+    public Locale getLocale() {
+      return locale;
+    }
+  }
 }
@@ -0,0 +1,60 @@
+package com.airbnb.epoxy;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import javax.tools.JavaFileObject;
+
+import static com.google.common.truth.Truth.assert_;
+import static com.google.testing.compile.JavaFileObjects.forResource;
+import static com.google.testing.compile.JavaSourceSubjectFactory.javaSource;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KotlinModelBuilderExtensionTest {
+
+  @Rule public TemporaryFolder kotlinGeneratedDir = new TemporaryFolder();
+
+  @Test
+  public void extensionInitializesGeneratedModelDirectly() throws IOException {
+    String extensions = generateExtensions("BasicModelWithAttribute.java");
+
+    assertTrue(extensions.contains("inline fun EpoxyController.basicModelWithAttribute("));
+    assertTrue(extensions.contains("BasicModelWithAttribute_.() -> Unit"));
+    assertTrue(extensions.contains("val model = BasicModelWithAttribute_()"));
+    assertTrue(extensions.contains("model.modelInitializer()"));
+    assertTrue(extensions.contains("model.addTo(this)"));
+    assertFalse(extensions.contains("BasicModelWithAttributeBuilder"));
+  }
+
+  @Test
+  public void extensionOfNestedModelUsesBuilderInterface() throws IOException {
+    String extensions = generateExtensions("ModelWithSuperAttributes.java");
+
+    assertTrue(extensions.contains(
+        "ModelWithSuperAttributes_SubModelWithSuperAttributesBuilder.() -> Unit"));
+    assertTrue(extensions.contains(
+        "val model = `ModelWithSuperAttributes$SubModelWithSuperAttributes_`()"));
+  }
+
+  private String generateExtensions(String inputFile) throws IOException {
+    JavaFileObject model = forResource(inputFile);
+    String dirPath = kotlinGeneratedDir.getRoot().getAbsolutePath();
+
+    assert_().about(javaSource())
+        .that(model)
+        .processedWith(EpoxyProcessor.withKotlinExtensions(dirPath))
+        .compilesWithoutError();
+
+    File extensionFile = new File(kotlinGeneratedDir.getRoot(),
+        "com/airbnb/epoxy/EpoxyModelKotlinExtensions.kt");
+    assertTrue(extensionFile.exists());
+    return new String(Files.readAllBytes(extensionFile.toPath()), StandardCharsets.UTF_8);
+  }
+}
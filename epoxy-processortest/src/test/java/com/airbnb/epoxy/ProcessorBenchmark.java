@@ -0,0 +1,289 @@
+package com.airbnb.epoxy;
+
+import com.google.testing.compile.JavaFileObjects;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaFileObject;
+
+import static com.google.common.truth.Truth.assert_;
+import static com.google.testing.compile.JavaSourcesSubjectFactory.javaSources;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Measures how long the processor takes on projects of different sizes, so that performance
+ * regressions can be caught before a release. For each size, that many models, that many model
+ * views, and a controller for every {@link #MODELS_PER_CONTROLLER} of them are generated as
+ * sources and compiled with the processor.
+ * <p>
+ * This is skipped unless the epoxyBenchmark Gradle property is set:
+ * <pre>
+ * ./gradlew :epoxy-processortest:testDebugUnitTest --tests '*ProcessorBenchmark' -PepoxyBenchmark
+ * </pre>
+ * The sizes and the number of iterations of each can be changed with the epoxyBenchmarkSizes (eg
+ * "100,1000,5000") and epoxyBenchmarkIterations properties. The fastest iteration of each size is
+ * reported, along with the highest peak heap usage of any iteration. The report is printed and
+ * written to build/reports/epoxy-processor-benchmark.txt.
+ */
+public class ProcessorBenchmark {
+  private static final String BENCHMARK_PROPERTY = "epoxy.benchmark";
+  private static final String SIZES_PROPERTY = "epoxy.benchmark.sizes";
+  private static final String ITERATIONS_PROPERTY = "epoxy.benchmark.iterations";
+  private static final String DEFAULT_SIZES = "100,1000,5000";
+  private static final int DEFAULT_ITERATIONS = 3;
+  private static final String REPORT_PATH = "build/reports/epoxy-processor-benchmark.txt";
+
+  private static final String PACKAGE = "com.airbnb.epoxy.benchmark";
+  /** Half of these are models, and half are model views. */
+  private static final int MODELS_PER_CONTROLLER = 20;
+
+  @Test
+  public void benchmarkProcessor() throws IOException {
+    assumeTrue("Set the epoxyBenchmark Gradle property to benchmark the processor",
+        Boolean.getBoolean(BENCHMARK_PROPERTY));
+
+    List<Integer> sizes = parseSizes(System.getProperty(SIZES_PROPERTY, DEFAULT_SIZES));
+    int iterations = Integer.getInteger(ITERATIONS_PROPERTY, DEFAULT_ITERATIONS);
+
+    // Warm up so that the first size doesn't include class loading and JIT compilation
+    compile(generateSources(sizes.get(0)));
+
+    StringBuilder report = new StringBuilder(String.format(Locale.US, "%8s %12s %16s %14s %14s%n",
+        "size", "sources", "processing ms", "total ms", "peak heap MB"));
+
+    for (int size : sizes) {
+      List<JavaFileObject> sources = generateSources(size);
+
+      Result best = null;
+      long peakHeapBytes = 0;
+      for (int i = 0; i < iterations; i++) {
+        Result result = compile(sources);
+        if (best == null || result.processingNanos < best.processingNanos) {
+          best = result;
+        }
+        peakHeapBytes = Math.max(peakHeapBytes, result.peakHeapBytes);
+      }
+
+      report.append(String.format(Locale.US, "%8d %12d %16.1f %14.1f %14.1f%n",
+          size, sources.size(), best.processingNanos / 1_000_000.0,
+          best.totalNanos / 1_000_000.0, peakHeapBytes / (1024.0 * 1024.0)));
+    }
+
+    System.out.print(report);
+    writeReport(report.toString());
+  }
+
+  private static List<Integer> parseSizes(String sizes) {
+    List<Integer> result = new ArrayList<>();
+    for (String size : sizes.split(",")) {
+      result.add(Integer.parseInt(size.trim()));
+    }
+    return result;
+  }
+
+  private static Result compile(List<JavaFileObject> sources) {
+    System.gc();
+    resetPeakHeapUsage();
+
+    TimedEpoxyProcessor processor = new TimedEpoxyProcessor();
+    long start = System.nanoTime();
+
+    assert_().about(javaSources())
+        .that(sources)
+        .processedWith(processor)
+        .compilesWithoutError();
+
+    return new Result(processor.processingNanos, System.nanoTime() - start, getPeakHeapUsage());
+  }
+
+  private static void resetPeakHeapUsage() {
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+      }
+    }
+  }
+
+  /**
+   * The sum of the peak usage of each heap pool. The pools may peak at different times, so this is
+   * an upper bound of the actual peak.
+   */
+  private static long getPeakHeapUsage() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+
+  private static void writeReport(String report) throws IOException {
+    File file = new File(REPORT_PATH);
+    file.getParentFile().mkdirs();
+
+    Writer writer = new FileWriter(file);
+    try {
+      writer.write(report);
+    } finally {
+      writer.close();
+    }
+  }
+
+  private static List<JavaFileObject> generateSources(int size) {
+    List<JavaFileObject> sources = new ArrayList<>();
+
+    for (int i = 0; i < size; i++) {
+      sources.add(generateModel(i));
+      sources.add(generateView(i));
+    }
+
+    int modelsOfEachTypePerController = MODELS_PER_CONTROLLER / 2;
+    int controllerCount = Math.max(1, size / modelsOfEachTypePerController);
+    for (int i = 0; i < controllerCount; i++) {
+      sources.add(generateController(i, modelsOfEachTypePerController, size));
+    }
+
+    return sources;
+  }
+
+  private static JavaFileObject generateModel(int index) {
+    String name = "BenchmarkModel" + index;
+    return JavaFileObjects.forSourceString(PACKAGE + "." + name, ""
+        + "package " + PACKAGE + ";\n"
+        + "\n"
+        + "import android.view.View;\n"
+        + "\n"
+        + "import com.airbnb.epoxy.EpoxyAttribute;\n"
+        + "import com.airbnb.epoxy.EpoxyModel;\n"
+        + "import com.airbnb.epoxy.EpoxyModelClass;\n"
+        + "\n"
+        + "import java.util.List;\n"
+        + "\n"
+        + "import static com.airbnb.epoxy.EpoxyAttribute.Option.DoNotHash;\n"
+        + "\n"
+        + "@EpoxyModelClass(layout = 1)\n"
+        + "public abstract class " + name + " extends EpoxyModel<View> {\n"
+        + "  @EpoxyAttribute int count;\n"
+        + "  @EpoxyAttribute boolean enabled;\n"
+        + "  @EpoxyAttribute String title;\n"
+        + "  @EpoxyAttribute CharSequence subtitle;\n"
+        + "  @EpoxyAttribute List<String> tags;\n"
+        + "  @EpoxyAttribute(DoNotHash) View.OnClickListener clickListener;\n"
+        + "}\n");
+  }
+
+  private static JavaFileObject generateView(int index) {
+    String name = "BenchmarkView" + index;
+    return JavaFileObjects.forSourceString(PACKAGE + "." + name, ""
+        + "package " + PACKAGE + ";\n"
+        + "\n"
+        + "import android.content.Context;\n"
+        + "import android.support.annotation.Nullable;\n"
+        + "import android.view.View;\n"
+        + "\n"
+        + "import com.airbnb.epoxy.CallbackProp;\n"
+        + "import com.airbnb.epoxy.ModelProp;\n"
+        + "import com.airbnb.epoxy.ModelView;\n"
+        + "import com.airbnb.epoxy.TextProp;\n"
+        + "\n"
+        + "import java.util.List;\n"
+        + "\n"
+        + "@ModelView(defaultLayout = 1)\n"
+        + "public class " + name + " extends View {\n"
+        + "\n"
+        + "  public " + name + "(Context context) {\n"
+        + "    super(context);\n"
+        + "  }\n"
+        + "\n"
+        + "  @ModelProp\n"
+        + "  public void setCount(int count) {\n"
+        + "  }\n"
+        + "\n"
+        + "  @ModelProp\n"
+        + "  public void setEnabled(boolean enabled) {\n"
+        + "  }\n"
+        + "\n"
+        + "  @ModelProp\n"
+        + "  public void setTags(List<String> tags) {\n"
+        + "  }\n"
+        + "\n"
+        + "  @TextProp\n"
+        + "  public void setTitle(CharSequence title) {\n"
+        + "  }\n"
+        + "\n"
+        + "  @CallbackProp\n"
+        + "  public void setClickListener(@Nullable View.OnClickListener listener) {\n"
+        + "  }\n"
+        + "}\n");
+  }
+
+  private static JavaFileObject generateController(int index, int modelsOfEachType,
+      int modelCount) {
+    String name = "BenchmarkController" + index;
+
+    StringBuilder fields = new StringBuilder();
+    for (int i = 0; i < modelsOfEachType; i++) {
+      int modelIndex = (index * modelsOfEachType + i) % modelCount;
+      fields.append("  @AutoModel BenchmarkModel").append(modelIndex).append("_ model")
+          .append(i).append(";\n")
+          .append("  @AutoModel BenchmarkView").append(modelIndex).append("Model_ view")
+          .append(i).append(";\n");
+    }
+
+    return JavaFileObjects.forSourceString(PACKAGE + "." + name, ""
+        + "package " + PACKAGE + ";\n"
+        + "\n"
+        + "import com.airbnb.epoxy.AutoModel;\n"
+        + "import com.airbnb.epoxy.EpoxyController;\n"
+        + "\n"
+        + "public class " + name + " extends EpoxyController {\n"
+        + fields
+        + "\n"
+        + "  @Override\n"
+        + "  protected void buildModels() {\n"
+        + "  }\n"
+        + "}\n");
+  }
+
+  private static class Result {
+    final long processingNanos;
+    final long totalNanos;
+    final long peakHeapBytes;
+
+    Result(long processingNanos, long totalNanos, long peakHeapBytes) {
+      this.processingNanos = processingNanos;
+      this.totalNanos = totalNanos;
+      this.peakHeapBytes = peakHeapBytes;
+    }
+  }
+
+  /** Records the time spent in the processor, separately from the rest of compilation. */
+  private static class TimedEpoxyProcessor extends EpoxyProcessor {
+    long processingNanos;
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+      long start = System.nanoTime();
+      try {
+        return super.process(annotations, roundEnv);
+      } finally {
+        processingNanos += System.nanoTime() - start;
+      }
+    }
+  }
+}
@@ -0,0 +1,10 @@
+package com.airbnb.epoxy;
+
+public class ModelForLeanGeneration extends EpoxyModel<Object> {
+  @EpoxyAttribute int value;
+
+  @Override
+  protected int getDefaultLayout() {
+    return 0;
+  }
+}
\ No newline at end of file
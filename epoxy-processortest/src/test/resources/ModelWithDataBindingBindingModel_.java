@@ -3,8 +3,8 @@ package com.airbnb.epoxy;
 import android.databinding.ViewDataBinding;
 import android.support.annotation.LayoutRes;
 import android.support.annotation.Nullable;
+import com.airbnb.epoxy.databinding.ModelWithDataBindingBinding;
 import java.lang.CharSequence;
-import java.lang.IllegalStateException;
 import java.lang.Number;
 import java.lang.Object;
 import java.lang.Override;
@@ -157,9 +157,8 @@ public class ModelWithDataBindingBindingModel_ extends DataBindingEpoxyModel imp
 
   @Override
   protected void setDataBindingVariables(ViewDataBinding binding) {
-    if (!binding.setVariable(BR.stringValue, stringValue)) {
-      throw new IllegalStateException("The attribute stringValue was defined in your data binding model (com.airbnb.epoxy.DataBindingEpoxyModel) but a data variable of that name was not found in the layout.");
-    }
+    ModelWithDataBindingBinding typedBinding = (ModelWithDataBindingBinding) binding;
+    typedBinding.setStringValue(stringValue);
   }
 
   @Override
@@ -169,8 +168,9 @@ public class ModelWithDataBindingBindingModel_ extends DataBindingEpoxyModel imp
       return;
     }
     ModelWithDataBindingBindingModel_ that = (ModelWithDataBindingBindingModel_) previousModel;
+    ModelWithDataBindingBinding typedBinding = (ModelWithDataBindingBinding) binding;
     if (stringValue != null ? !stringValue.equals(that.stringValue) : that.stringValue != null) {
-      binding.setVariable(BR.stringValue, stringValue);
+      typedBinding.setStringValue(stringValue);
     }
   }
 
@@ -35,7 +35,7 @@ public class MainActivity extends AppCompatActivity implements AdapterCallbacks
   private static final int SPAN_COUNT = 2;
 
   private final RecycledViewPool recycledViewPool = new RecycledViewPool();
-  private final SampleController controller = new SampleController(this, recycledViewPool);
+  private final SampleController controller = new SampleController(this);
   private List<CarouselData> carousels = new ArrayList<>();
 
   @Override
@@ -43,10 +43,9 @@ public class MainActivity extends AppCompatActivity implements AdapterCallbacks
     super.onCreate(savedInstanceState);
     setContentView(R.layout.activity_main);
 
-    // Many carousels and color models are shown on screen at once. The default recycled view
-    // pool size is only 5, so we manually set the pool size to avoid constantly creating new views
-    // We also use a shared view pool so that carousels can recycle items between themselves.
-    recycledViewPool.setMaxRecycledViews(R.layout.model_color, Integer.MAX_VALUE);
+    // Many carousels are shown on screen at once. The default recycled view pool size is only 5,
+    // so we manually set the pool size to avoid constantly creating new views. Views inside the
+    // carousels are recycled through a separate pool that all carousels share.
     recycledViewPool.setMaxRecycledViews(R.layout.model_carousel_group, Integer.MAX_VALUE);
     RecyclerView recyclerView = (RecyclerView) findViewById(R.id.recycler_view);
     recyclerView.setRecycledViewPool(recycledViewPool);
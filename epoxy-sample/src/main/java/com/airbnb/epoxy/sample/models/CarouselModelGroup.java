@@ -1,7 +1,5 @@
 package com.airbnb.epoxy.sample.models;
 
-import android.support.v7.widget.RecyclerView.RecycledViewPool;
-
 import com.airbnb.epoxy.EpoxyModel;
 import com.airbnb.epoxy.EpoxyModelGroup;
 import com.airbnb.epoxy.R;
@@ -15,15 +13,14 @@ import java.util.List;
 public class CarouselModelGroup extends EpoxyModelGroup {
   public final CarouselData data;
 
-  public CarouselModelGroup(CarouselData carousel, AdapterCallbacks callbacks,
-      RecycledViewPool recycledViewPool) {
-    super(R.layout.model_carousel_group, buildModels(carousel, callbacks, recycledViewPool));
+  public CarouselModelGroup(CarouselData carousel, AdapterCallbacks callbacks) {
+    super(R.layout.model_carousel_group, buildModels(carousel, callbacks));
     this.data = carousel;
     id(carousel.getId());
   }
 
-  private static List<EpoxyModel<?>> buildModels(CarouselData carousel, AdapterCallbacks callbacks,
-      RecycledViewPool recycledViewPool) {
+  private static List<EpoxyModel<?>> buildModels(CarouselData carousel,
+      AdapterCallbacks callbacks) {
     List<ColorData> colors = carousel.getColors();
     ArrayList<EpoxyModel<?>> models = new ArrayList<>();
 
@@ -61,8 +58,9 @@ public class CarouselModelGroup extends EpoxyModelGroup {
           }));
     }
 
-    models.add(new CarouselModel_()
-        .recycledViewPool(recycledViewPool)
+    // Carousels share a view pool with each other automatically, so new color views aren't created
+    // for each new carousel.
+    models.add(new GridCarouselModel()
         .models(colorModels));
 
     return models;
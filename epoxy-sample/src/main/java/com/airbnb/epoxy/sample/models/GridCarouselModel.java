@@ -0,0 +1,15 @@
+package com.airbnb.epoxy.sample.models;
+
+import android.content.Context;
+
+import com.airbnb.epoxy.Carousel;
+import com.airbnb.epoxy.CarouselModel;
+import com.airbnb.epoxy.sample.views.GridCarousel;
+
+public class GridCarouselModel extends CarouselModel {
+
+  @Override
+  protected Carousel createCarousel(Context context) {
+    return new GridCarousel(context);
+  }
+}
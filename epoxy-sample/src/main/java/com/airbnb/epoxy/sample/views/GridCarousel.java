@@ -0,0 +1,32 @@
+package com.airbnb.epoxy.sample.views;
+
+import android.content.Context;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.LinearLayoutManager;
+
+import com.airbnb.epoxy.Carousel;
+import com.airbnb.epoxy.R;
+
+public class GridCarousel extends Carousel {
+  private static final int SPAN_COUNT = 2;
+
+  public GridCarousel(Context context) {
+    super(context);
+  }
+
+  @Override
+  protected LinearLayoutManager createLayoutManager() {
+    // For the example app we use a grid, but in many real world scenarios the default horizontal
+    // linearlayoutmanager is common.
+    return new GridLayoutManager(getContext(), SPAN_COUNT, LinearLayoutManager.HORIZONTAL, false);
+  }
+
+  @Override
+  protected void onAttachedToWindow() {
+    super.onAttachedToWindow();
+
+    // Many color models are shown on screen at once. The default recycled view pool size is only
+    // 5, so we increase the size of the shared carousel pool to avoid constantly creating new views
+    getRecycledViewPool().setMaxRecycledViews(R.layout.model_color, Integer.MAX_VALUE);
+  }
+}